@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2019 Jorrit "Chainfire" Jongma
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package eu.chainfire.holeylight.animation;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.Rect;
+
+import com.airbnb.lottie.LottieComposition;
+import com.airbnb.lottie.LottieCompositionFactory;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Expanding the runs must give back the exact alpha of the encoded area.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AlphaRunsTest {
+    // Expands into a buffer filled with a marker, transparent pixels must keep it
+    private static final byte UNTOUCHED = (byte)0x7F;
+
+    private static void assertRoundTrip(String message, Bitmap bitmap, Rect area, Rect bounds) {
+        int width = area.width();
+        int height = area.height();
+        int[] pixels = new int[width * height];
+        bitmap.getPixels(pixels, 0, width, area.left, area.top, width, height);
+
+        AlphaRuns runs = new AlphaRuns(bitmap, area, bounds);
+        byte[] target = new byte[width * height];
+        Arrays.fill(target, UNTOUCHED);
+        runs.expand(target, width);
+
+        for (int i = 0; i < pixels.length; i++) {
+            int alpha = Color.alpha(pixels[i]);
+            int expected = alpha == 0 ? UNTOUCHED & 0xFF : alpha;
+            assertEquals(String.format(Locale.ENGLISH, "%s at %d,%d", message, i % width, i / width), expected, target[i] & 0xFF);
+        }
+    }
+
+    @Test
+    public void runsAndLiterals() {
+        Bitmap bitmap = Bitmap.createBitmap(48, 8, Bitmap.Config.ARGB_8888);
+        int[] alpha = new int[] {
+                // short runs stay literal
+                0, 10, 10, 10, 0, 20, 30, 40,
+                // a run, directly followed by literals, then another run
+                200, 200, 200, 200, 200, 50, 60, 255, 255, 255, 255, 0,
+                // literals interrupted by transparency
+                1, 2, 0, 0, 3, 4,
+                // run up to the edge
+                0, 0, 90, 90, 90, 90, 90, 90, 90, 90, 90, 90, 90, 90, 90, 90, 90, 90, 90, 90, 90, 90
+        };
+        assertEquals(bitmap.getWidth(), alpha.length);
+        for (int y = 0; y < bitmap.getHeight(); y++) {
+            for (int x = 0; x < bitmap.getWidth(); x++) {
+                // first and last row stay transparent
+                int a = (y == 0) || (y == bitmap.getHeight() - 1) ? 0 : alpha[(x + y) % alpha.length];
+                bitmap.setPixel(x, y, Color.argb(a, 255, 255, 255));
+            }
+        }
+        Rect area = new Rect(0, 0, bitmap.getWidth(), bitmap.getHeight());
+        assertRoundTrip("full", bitmap, area, new Rect(0, 1, bitmap.getWidth(), bitmap.getHeight() - 1));
+        bitmap.recycle();
+    }
+
+    @Test
+    public void areaInAtlas() {
+        Random random = new Random(0);
+        Bitmap bitmap = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+        Rect area = new Rect(20, 30, 70, 60);
+        Rect bounds = new Rect(5, 3, 45, 27);
+        for (int y = 0; y < bitmap.getHeight(); y++) {
+            for (int x = 0; x < bitmap.getWidth(); x++) {
+                // other sprites around the area must not leak in
+                boolean inside = (x >= area.left + bounds.left) && (x < area.left + bounds.right) && (y >= area.top + bounds.top) && (y < area.top + bounds.bottom);
+                boolean inArea = area.contains(x, y);
+                int a = (inside || !inArea) ? (random.nextInt(4) == 0 ? 0 : (random.nextInt(2) == 0 ? 128 : random.nextInt(256))) : 0;
+                bitmap.setPixel(x, y, Color.argb(a, 255, 255, 255));
+            }
+        }
+        assertRoundTrip("atlas", bitmap, area, bounds);
+        bitmap.recycle();
+    }
+
+    @Test
+    public void emptyBounds() {
+        Bitmap bitmap = Bitmap.createBitmap(16, 16, Bitmap.Config.ARGB_8888);
+        Rect area = new Rect(0, 0, 16, 16);
+        assertRoundTrip("empty", bitmap, area, new Rect());
+        bitmap.recycle();
+    }
+
+    @Test
+    public void animationFrames() {
+        LottieComposition lottieComposition = LottieCompositionFactory.fromJsonStringSync(NotificationAnimation.jsonBeyond0, null).getValue();
+        assertNotNull(lottieComposition);
+        int width = lottieComposition.getBounds().width();
+        int height = lottieComposition.getBounds().height();
+        SpriteSheet spriteSheet = SpriteSheet.fromLottieComposition(lottieComposition, width, height, SpritePlayer.Mode.SWIRL);
+        assertNotNull(spriteSheet);
+        try {
+            long raw = (long)width * height;
+            for (int i = 0; i < spriteSheet.getFrames(); i++) {
+                SpriteSheet.Sprite sprite = spriteSheet.getFrame(i);
+                assertRoundTrip("frame " + i, sprite.getBitmap(), sprite.getArea(), sprite.getBounds());
+                long bytes = new AlphaRuns(sprite.getBitmap(), sprite.getArea(), sprite.getBounds()).getByteCount();
+                assertTrue(String.format(Locale.ENGLISH, "frame %d: %d bytes", i, bytes), bytes < raw);
+            }
+        } finally {
+            spriteSheet.release();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2019 Jorrit "Chainfire" Jongma
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package eu.chainfire.holeylight.animation;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * The pool is process wide, so every case starts from an empty pool and compares the hit and
+ * allocation counters against what they were before.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BitmapPoolTest {
+    private long hits;
+    private long allocations;
+
+    @Before
+    public void setUp() {
+        BitmapPool.clear();
+        hits = BitmapPool.getHits();
+        allocations = BitmapPool.getAllocations();
+    }
+
+    @After
+    public void tearDown() {
+        BitmapPool.clear();
+    }
+
+    @Test
+    public void reusesReleased() {
+        Bitmap first = BitmapPool.obtain(100, 100, Bitmap.Config.ARGB_8888);
+        first.eraseColor(Color.RED);
+        BitmapPool.release(first);
+
+        Bitmap second = BitmapPool.obtain(90, 100, Bitmap.Config.ARGB_8888);
+        assertSame(first, second);
+        assertEquals(90, second.getWidth());
+        assertEquals(100, second.getHeight());
+        assertEquals(Color.TRANSPARENT, second.getPixel(0, 0));
+        assertEquals(hits + 1, BitmapPool.getHits());
+        assertEquals(allocations + 1, BitmapPool.getAllocations());
+        second.recycle();
+    }
+
+    @Test
+    public void reconfiguresConfig() {
+        Bitmap first = BitmapPool.obtain(100, 100, Bitmap.Config.ARGB_8888);
+        BitmapPool.release(first);
+
+        // 100x100 ARGB_8888 fits 200x100 ALPHA_8 with room to spare, but within the ratio
+        Bitmap second = BitmapPool.obtain(200, 100, Bitmap.Config.ALPHA_8);
+        assertSame(first, second);
+        assertEquals(Bitmap.Config.ALPHA_8, second.getConfig());
+        second.recycle();
+    }
+
+    @Test
+    public void picksSmallestFit() {
+        Bitmap large = BitmapPool.obtain(100, 100, Bitmap.Config.ARGB_8888);
+        Bitmap small = BitmapPool.obtain(80, 80, Bitmap.Config.ARGB_8888);
+        BitmapPool.release(large);
+        BitmapPool.release(small);
+
+        Bitmap bitmap = BitmapPool.obtain(75, 75, Bitmap.Config.ARGB_8888);
+        assertSame(small, bitmap);
+        bitmap.recycle();
+    }
+
+    @Test
+    public void skipsFarLarger() {
+        Bitmap large = BitmapPool.obtain(200, 200, Bitmap.Config.ARGB_8888);
+        BitmapPool.release(large);
+
+        // a quarter of the size, more than MAX_REUSE_RATIO smaller
+        Bitmap small = BitmapPool.obtain(100, 100, Bitmap.Config.ARGB_8888);
+        assertNotSame(large, small);
+        assertFalse(large.isRecycled());
+        assertEquals(hits, BitmapPool.getHits());
+        assertEquals(allocations + 2, BitmapPool.getAllocations());
+        small.recycle();
+
+        // still there for a request it does fit
+        Bitmap again = BitmapPool.obtain(150, 150, Bitmap.Config.ARGB_8888);
+        assertSame(large, again);
+        again.recycle();
+    }
+
+    @Test
+    public void tooSmallAllocates() {
+        Bitmap small = BitmapPool.obtain(50, 50, Bitmap.Config.ARGB_8888);
+        BitmapPool.release(small);
+
+        Bitmap large = BitmapPool.obtain(100, 100, Bitmap.Config.ARGB_8888);
+        assertNotSame(small, large);
+        assertEquals(hits, BitmapPool.getHits());
+        large.recycle();
+    }
+
+    @Test
+    public void discardsOverBudget() {
+        // 8MB each, the pool keeps 16MB
+        Bitmap[] bitmaps = new Bitmap[3];
+        for (int i = 0; i < bitmaps.length; i++) {
+            bitmaps[i] = Bitmap.createBitmap(2048, 1024, Bitmap.Config.ARGB_8888);
+        }
+        for (Bitmap bitmap : bitmaps) {
+            BitmapPool.release(bitmap);
+        }
+        assertTrue(bitmaps[0].isRecycled());
+        assertFalse(bitmaps[1].isRecycled());
+        assertFalse(bitmaps[2].isRecycled());
+    }
+
+    @Test
+    public void recyclesUnpoolable() {
+        Bitmap immutable = Bitmap.createBitmap(new int[] { Color.RED }, 1, 1, Bitmap.Config.ARGB_8888);
+        BitmapPool.release(immutable);
+        assertTrue(immutable.isRecycled());
+    }
+
+    @Test
+    public void releaseTwice() {
+        Bitmap bitmap = BitmapPool.obtain(100, 100, Bitmap.Config.ARGB_8888);
+        BitmapPool.release(bitmap);
+        BitmapPool.release(bitmap);
+
+        assertSame(bitmap, BitmapPool.obtain(100, 100, Bitmap.Config.ARGB_8888));
+        Bitmap other = BitmapPool.obtain(100, 100, Bitmap.Config.ARGB_8888);
+        assertNotSame(bitmap, other);
+        bitmap.recycle();
+        other.recycle();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2019 Jorrit "Chainfire" Jongma
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package eu.chainfire.holeylight.animation;
+
+import com.airbnb.lottie.LottieComposition;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Listeners are called on the main thread, so this waits for them from the test thread. The
+ * cache lives for the whole process, each case uses its own keys.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CompositionCacheTest {
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    private static class Result implements CompositionCache.OnCompositionListener {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private final AtomicReference<LottieComposition> lottieComposition = new AtomicReference<>();
+
+        @Override
+        public void onComposition(LottieComposition lottieComposition) {
+            this.lottieComposition.set(lottieComposition);
+            latch.countDown();
+        }
+
+        private LottieComposition await() throws InterruptedException {
+            assertTrue("listener not called", latch.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+            return lottieComposition.get();
+        }
+    }
+
+    private static String getKey(String name) {
+        return name + "_" + System.nanoTime();
+    }
+
+    @Test
+    public void parsesOnce() throws InterruptedException {
+        String key = getKey("parsesOnce");
+        int parseCount = CompositionCache.getParseCount();
+        int hitCount = CompositionCache.getHitCount();
+
+        Result first = new Result();
+        Result second = new Result();
+        CompositionCache.get(key, NotificationAnimation.jsonBeyond0, first);
+        CompositionCache.get(key, NotificationAnimation.jsonBeyond0, second);
+        LottieComposition lottieComposition = first.await();
+        assertNotNull(lottieComposition);
+        assertSame(lottieComposition, second.await());
+        assertEquals(parseCount + 1, CompositionCache.getParseCount());
+
+        // available now, called right away
+        Result third = new Result();
+        CompositionCache.get(key, NotificationAnimation.jsonBeyond0, third);
+        assertEquals(0, third.latch.getCount());
+        assertSame(lottieComposition, third.await());
+        assertEquals(parseCount + 1, CompositionCache.getParseCount());
+        assertEquals(hitCount + 1, CompositionCache.getHitCount());
+    }
+
+    @Test
+    public void failureNotifiesAndRetries() throws InterruptedException {
+        String key = getKey("failure");
+        int parseCount = CompositionCache.getParseCount();
+
+        Result first = new Result();
+        Result second = new Result();
+        CompositionCache.get(key, "{", first);
+        CompositionCache.get(key, "{", second);
+        assertNull(first.await());
+        assertNull(second.await());
+
+        // not stuck pending, parses again
+        Result retry = new Result();
+        CompositionCache.get(key, NotificationAnimation.jsonBeyond0, retry);
+        assertNotNull(retry.await());
+        assertEquals(parseCount + 1, CompositionCache.getParseCount());
+    }
+
+    @Test
+    public void removedListener() throws InterruptedException {
+        String key = getKey("removedListener");
+
+        Result removed = new Result();
+        Result kept = new Result();
+        CompositionCache.get(key, NotificationAnimation.jsonBeyond0, removed);
+        CompositionCache.get(key, NotificationAnimation.jsonBeyond0, kept);
+        CompositionCache.removeListener(removed);
+        assertNotNull(kept.await());
+        assertEquals(1, removed.latch.getCount());
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2019 Jorrit "Chainfire" Jongma
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package eu.chainfire.holeylight.animation;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+
+import com.airbnb.lottie.LottieComposition;
+import com.airbnb.lottie.LottieCompositionFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * The steady-state frame path must not allocate. Each case draws a full loop once to warm up,
+ * then counts what the following loops allocate on this thread. The SpritePlayer cases run its
+ * whole frame step, from the callback through the post, into a bitmap backed holder.
+ */
+@RunWith(AndroidJUnit4.class)
+@SuppressWarnings("deprecation")
+public class FramePathAllocationTest {
+    private Bitmap bitmap;
+    private Canvas canvas;
+    private final Paint paint = new Paint();
+    private final Rect dest = new Rect();
+
+    private static final long TIMEOUT_MILLIS = 10000;
+    private static final int STEPS_MAX = 10000;
+
+    private interface Loop {
+        void run();
+    }
+
+    // Stands in for the surface, locked and posted like one
+    private static class BitmapSurfaceHolder implements SurfaceHolder {
+        private final Canvas canvas;
+        private final Rect frame;
+
+        private BitmapSurfaceHolder(Bitmap bitmap) {
+            canvas = new Canvas(bitmap);
+            frame = new Rect(0, 0, bitmap.getWidth(), bitmap.getHeight());
+        }
+
+        @Override
+        public void addCallback(Callback callback) {
+        }
+
+        @Override
+        public void removeCallback(Callback callback) {
+        }
+
+        @Override
+        public boolean isCreating() {
+            return false;
+        }
+
+        @Override
+        public void setType(int type) {
+        }
+
+        @Override
+        public void setFixedSize(int width, int height) {
+        }
+
+        @Override
+        public void setSizeFromLayout() {
+        }
+
+        @Override
+        public void setFormat(int format) {
+        }
+
+        @Override
+        public void setKeepScreenOn(boolean screenOn) {
+        }
+
+        @Override
+        public Surface getSurface() {
+            return null;
+        }
+
+        @Override
+        public Rect getSurfaceFrame() {
+            return frame;
+        }
+
+        @Override
+        public Canvas lockCanvas() {
+            canvas.save();
+            return canvas;
+        }
+
+        @Override
+        public Canvas lockCanvas(Rect dirty) {
+            canvas.save();
+            canvas.clipRect(dirty);
+            return canvas;
+        }
+
+        @Override
+        public void unlockCanvasAndPost(Canvas canvas) {
+            canvas.restore();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        LottieComposition lottieComposition = getComposition();
+        dest.set(0, 0, lottieComposition.getBounds().width(), lottieComposition.getBounds().height());
+        bitmap = Bitmap.createBitmap(dest.width(), dest.height(), Bitmap.Config.ARGB_8888);
+        canvas = new Canvas(bitmap);
+        paint.setColor(Color.GREEN);
+        Debug.startAllocCounting();
+    }
+
+    @After
+    public void tearDown() {
+        Debug.stopAllocCounting();
+        bitmap.recycle();
+    }
+
+    private static LottieComposition getComposition() {
+        LottieComposition lottieComposition = LottieCompositionFactory.fromJsonStringSync(NotificationAnimation.jsonBeyond0, null).getValue();
+        assertNotNull(lottieComposition);
+        return lottieComposition;
+    }
+
+    private static int countAllocations(Loop loop) {
+        loop.run();
+        Debug.resetThreadAllocCount();
+        loop.run();
+        return Debug.getThreadAllocCount();
+    }
+
+    private void assertSheetLoopAllocationFree(SpriteSheet spriteSheet) {
+        assertTrue(spriteSheet.beginDraw());
+        try {
+            assertEquals(0, countAllocations(() -> {
+                for (int i = 0; i < spriteSheet.getFrames(); i++) {
+                    SpriteSheet.Sprite sprite = spriteSheet.getFrame(i);
+                    canvas.drawBitmap(sprite.getBitmap(), sprite.getArea(), dest, paint);
+                }
+            }));
+        } finally {
+            spriteSheet.endDraw();
+        }
+    }
+
+    @Test
+    public void spriteSheet() {
+        SpriteSheet spriteSheet = SpriteSheet.fromLottieComposition(getComposition(), dest.width(), dest.height(), SpritePlayer.Mode.SWIRL, true);
+        assertNotNull(spriteSheet);
+        try {
+            assertSheetLoopAllocationFree(spriteSheet);
+        } finally {
+            spriteSheet.release();
+        }
+    }
+
+    @Test
+    public void runLengthEncoded() {
+        SpriteSheet spriteSheet = SpriteSheet.fromLottieComposition(getComposition(), dest.width(), dest.height(), SpritePlayer.Mode.SWIRL, true);
+        assertNotNull(spriteSheet);
+        try {
+            assertTrue(spriteSheet.encode());
+            assertSheetLoopAllocationFree(spriteSheet);
+        } finally {
+            spriteSheet.release();
+        }
+    }
+
+    @Test
+    public void ringRenderer() {
+        RingRenderer ringRenderer = RingRenderer.fromJson(NotificationAnimation.jsonBeyond0);
+        assertNotNull(ringRenderer);
+        int frames = ringRenderer.getFrames(SpritePlayer.Mode.SWIRL);
+        assertEquals(0, countAllocations(() -> {
+            for (int i = 0; i < frames; i++) {
+                ringRenderer.draw(canvas, dest, SpritePlayer.Mode.SWIRL, i, Color.GREEN);
+            }
+        }));
+    }
+
+    private void assertPlayerLoopsAllocationFree(int[] colors) throws InterruptedException {
+        LottieComposition lottieComposition = getComposition();
+        CountDownLatch swirlReady = new CountDownLatch(1);
+        AtomicBoolean loopComplete = new AtomicBoolean(false);
+        SpritePlayer[] player = new SpritePlayer[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            player[0] = new SpritePlayer(InstrumentationRegistry.getInstrumentation().getTargetContext());
+            player[0].setSurfaceHolder(new BitmapSurfaceHolder(bitmap));
+            player[0].setColors(colors);
+            player[0].setOnAnimationListener(new SpritePlayer.OnAnimationListener() {
+                @Override
+                public boolean onAnimationFrameStart(boolean draw) {
+                    return draw;
+                }
+
+                @Override
+                public void onAnimationFrameEnd(boolean draw) {
+                }
+
+                @Override
+                public boolean onAnimationComplete() {
+                    loopComplete.set(true);
+                    return true;
+                }
+            });
+            player[0].setOnSpriteSheetNeededListener((width, height, mode) -> {
+                // SWIRL is complete and published by the time the next mode is asked for
+                if (mode != SpritePlayer.Mode.SWIRL) {
+                    swirlReady.countDown();
+                    return null;
+                }
+                return SpriteSheet.fromLottieComposition(lottieComposition, width, height, mode, true);
+            });
+            player[0].updateDisplayArea(0, 0, dest.width(), dest.height());
+        });
+        try {
+            assertTrue("sheet not ready", swirlReady.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+            // the player isn't shown, so its render thread only clears the surface after the
+            // sheet changes, give it the time to do so
+            SystemClock.sleep(100);
+
+            long frameNanos = 1000000000L / 60;
+            long time = System.nanoTime();
+            int loops = 0;
+            int steps = 0;
+            int allocations = 0;
+            while ((loops < 3) && (steps < STEPS_MAX)) {
+                Debug.resetThreadAllocCount();
+                player[0].drawFrame(time);
+                int count = Debug.getThreadAllocCount();
+                time += frameNanos;
+                steps++;
+                if (loopComplete.getAndSet(false)) {
+                    // the frame that completes a loop logs statistics in debug builds
+                    loops++;
+                } else if (loops > 0) {
+                    allocations += count;
+                }
+            }
+            assertEquals(3, loops);
+            assertEquals(0, allocations);
+        } finally {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(player[0]::destroy);
+        }
+    }
+
+    @Test
+    public void spritePlayerSingleColor() throws InterruptedException {
+        assertPlayerLoopsAllocationFree(new int[] { Color.GREEN });
+    }
+
+    @Test
+    public void spritePlayerMultiColor() throws InterruptedException {
+        assertPlayerLoopsAllocationFree(new int[] { Color.RED, Color.GREEN, Color.WHITE });
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2019 Jorrit "Chainfire" Jongma
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package eu.chainfire.holeylight.animation;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+
+import com.airbnb.lottie.LottieComposition;
+import com.airbnb.lottie.LottieCompositionFactory;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * A ring sampled into a strip and mapped back should look like the original. The strip is
+ * resampled twice, so edges get softer and a few pixels along them may be off.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PolarStripTest {
+    private static final int TOLERANCE = 64;
+    private static final float MAX_PIXELS_OVER = 0.03f;
+
+    private static void assertSimilar(String message, Bitmap expected, Bitmap actual) {
+        int width = expected.getWidth();
+        int height = expected.getHeight();
+        int[] pa = new int[width * height];
+        int[] pb = new int[width * height];
+        expected.getPixels(pa, 0, width, 0, 0, width, height);
+        actual.getPixels(pb, 0, width, 0, 0, width, height);
+        int over = 0;
+        for (int i = 0; i < pa.length; i++) {
+            if (Math.abs(Color.alpha(pa[i]) - Color.alpha(pb[i])) > TOLERANCE) over++;
+        }
+        assertTrue(String.format(Locale.ENGLISH, "%s: %d pixels off", message, over), over <= pa.length * MAX_PIXELS_OVER);
+    }
+
+    @Test
+    public void circle() {
+        Bitmap source = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+        Bitmap decoded = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+        Path centerline = new Path();
+        centerline.addCircle(50, 50, 35, Path.Direction.CW);
+        Paint paint = new Paint();
+        paint.setAntiAlias(true);
+        paint.setColor(Color.WHITE);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeWidth(6);
+        Canvas canvas = new Canvas(source);
+        canvas.drawPath(centerline, paint);
+        // off the ring, not stored
+        paint.setStyle(Paint.Style.FILL);
+        canvas.drawCircle(50, 50, 5, paint);
+
+        PolarStrip polarStrip = PolarStrip.create(centerline, 6);
+        assertNotNull(polarStrip);
+        Bitmap strip = polarStrip.encode(source, new Rect(0, 0, 100, 100));
+        try {
+            assertEquals(Bitmap.Config.ALPHA_8, strip.getConfig());
+            assertEquals((int)Math.ceil(2 * Math.PI * 35), strip.getWidth());
+            assertEquals(6 + 2 * 2, strip.getHeight());
+            assertTrue(strip.getAllocationByteCount() < source.getWidth() * source.getHeight());
+
+            polarStrip.draw(new Canvas(decoded), strip);
+            assertEquals(0, Color.alpha(decoded.getPixel(50, 50)));
+            assertTrue(Color.alpha(decoded.getPixel(85, 50)) > 255 - TOLERANCE);
+
+            // compare the ring only
+            source.eraseColor(Color.TRANSPARENT);
+            paint.setStyle(Paint.Style.STROKE);
+            canvas.drawPath(centerline, paint);
+            assertSimilar("circle", source, decoded);
+        } finally {
+            strip.recycle();
+            source.recycle();
+            decoded.recycle();
+        }
+    }
+
+    @Test
+    public void degenerate() {
+        assertNull(PolarStrip.create(new Path(), 6));
+        Path centerline = new Path();
+        centerline.addCircle(50, 50, 35, Path.Direction.CW);
+        assertNull(PolarStrip.create(centerline, 0));
+    }
+
+    @Test
+    public void animationFrames() {
+        LottieComposition lottieComposition = LottieCompositionFactory.fromJsonStringSync(NotificationAnimation.jsonBeyond0, null).getValue();
+        assertNotNull(lottieComposition);
+        RingRenderer geometry = RingRenderer.fromJson(NotificationAnimation.jsonBeyond0);
+        assertNotNull(geometry);
+        int width = lottieComposition.getBounds().width();
+        int height = lottieComposition.getBounds().height();
+        Rect dest = new Rect(0, 0, width, height);
+
+        SpriteSheet golden = SpriteSheet.fromLottieComposition(lottieComposition, width, height, SpritePlayer.Mode.SWIRL);
+        SpriteSheet encoded = SpriteSheet.fromLottieComposition(lottieComposition, width, height, SpritePlayer.Mode.SWIRL);
+        assertNotNull(golden);
+        assertNotNull(encoded);
+        Bitmap expected = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Bitmap actual = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas expectedCanvas = new Canvas(expected);
+        Canvas actualCanvas = new Canvas(actual);
+        Paint paint = new Paint();
+        paint.setColor(Color.WHITE);
+        try {
+            long before = encoded.getByteCount();
+            assertTrue(encoded.encodePolar(geometry));
+            assertTrue(encoded.isEncoded());
+            assertTrue(encoded.getByteCount() < before);
+            assertEquals(golden.getFrames(), encoded.getFrames());
+
+            for (int i = 0; i < golden.getFrames(); i++) {
+                SpriteSheet.Sprite sprite = golden.getFrame(i);
+                expected.eraseColor(Color.TRANSPARENT);
+                expectedCanvas.drawBitmap(sprite.getBitmap(), sprite.getArea(), dest, paint);
+                sprite = encoded.getFrame(i);
+                actual.eraseColor(Color.TRANSPARENT);
+                actualCanvas.drawBitmap(sprite.getBitmap(), sprite.getArea(), dest, paint);
+                assertSimilar("frame " + i, expected, actual);
+            }
+        } finally {
+            golden.release();
+            encoded.release();
+            expected.recycle();
+            actual.recycle();
+        }
+    }
+}
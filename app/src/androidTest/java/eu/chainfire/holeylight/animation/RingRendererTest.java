@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2019 Jorrit "Chainfire" Jongma
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package eu.chainfire.holeylight.animation;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+
+import com.airbnb.lottie.LottieComposition;
+import com.airbnb.lottie.LottieCompositionFactory;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * RingRenderer output against the Lottie rendered sheets as golden images, per mode and frame.
+ * Anti-aliasing differs between the two, so a few pixels along the edges may be off.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RingRendererTest {
+    private static final int TOLERANCE = 16;
+    private static final float MAX_PIXELS_OVER = 0.01f;
+
+    private static final String[] NAMES = new String[] { "beyond0", "beyond1", "beyond2" };
+    private static final String[] JSONS = new String[] { NotificationAnimation.jsonBeyond0, NotificationAnimation.jsonBeyond1, NotificationAnimation.jsonBeyond2 };
+
+    private static LottieComposition getComposition(int index) {
+        LottieComposition lottieComposition = LottieCompositionFactory.fromJsonStringSync(JSONS[index], null).getValue();
+        assertNotNull(NAMES[index], lottieComposition);
+        return lottieComposition;
+    }
+
+    private static RingRenderer getRingRenderer(int index) {
+        RingRenderer ringRenderer = RingRenderer.fromJson(JSONS[index]);
+        assertNotNull(NAMES[index] + " unsupported", ringRenderer);
+        return ringRenderer;
+    }
+
+    @Test
+    public void matchesLottie() {
+        for (int i = 0; i < JSONS.length; i++) {
+            LottieComposition lottieComposition = getComposition(i);
+            RingRenderer ringRenderer = getRingRenderer(i);
+            int width = lottieComposition.getBounds().width();
+            int height = lottieComposition.getBounds().height();
+            Rect dest = new Rect(0, 0, width, height);
+            Bitmap golden = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            Bitmap ring = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            Canvas goldenCanvas = new Canvas(golden);
+            Canvas ringCanvas = new Canvas(ring);
+            int[] pa = new int[width * height];
+            int[] pb = new int[width * height];
+            try {
+                for (SpritePlayer.Mode mode : SpritePlayer.Mode.values()) {
+                    SpriteSheet spriteSheet = SpriteSheet.fromLottieComposition(lottieComposition, width, height, mode, false);
+                    assertNotNull(spriteSheet);
+                    try {
+                        assertEquals(ringRenderer.getFrames(mode), spriteSheet.getFrames());
+                        for (int frame = 0; frame < spriteSheet.getFrames(); frame++) {
+                            SpriteSheet.Sprite sprite = spriteSheet.getFrame(frame);
+                            golden.eraseColor(Color.TRANSPARENT);
+                            goldenCanvas.drawBitmap(sprite.getBitmap(), sprite.getArea(), dest, null);
+                            ring.eraseColor(Color.TRANSPARENT);
+                            ringRenderer.draw(ringCanvas, dest, mode, frame, Color.WHITE);
+
+                            golden.getPixels(pa, 0, width, 0, 0, width, height);
+                            ring.getPixels(pb, 0, width, 0, 0, width, height);
+                            int over = 0;
+                            for (int j = 0; j < pa.length; j++) {
+                                if (Math.abs(Color.alpha(pa[j]) - Color.alpha(pb[j])) > TOLERANCE) over++;
+                            }
+                            assertTrue(String.format(Locale.ENGLISH, "%s %s frame %d: %d pixels off", NAMES[i], mode.name(), frame, over),
+                                    over <= pa.length * MAX_PIXELS_OVER);
+                        }
+                    } finally {
+                        spriteSheet.release();
+                    }
+                }
+            } finally {
+                golden.recycle();
+                ring.recycle();
+            }
+        }
+    }
+
+    @Test
+    public void keepsColorAlpha() {
+        RingRenderer ringRenderer = getRingRenderer(0);
+        LottieComposition lottieComposition = getComposition(0);
+        int width = lottieComposition.getBounds().width();
+        int height = lottieComposition.getBounds().height();
+        Rect dest = new Rect(0, 0, width, height);
+        Bitmap opaque = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Bitmap translucent = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        try {
+            // widest stroke of the swirl
+            ringRenderer.draw(new Canvas(opaque), dest, SpritePlayer.Mode.SWIRL, 9, Color.WHITE);
+            ringRenderer.draw(new Canvas(translucent), dest, SpritePlayer.Mode.SWIRL, 9, Color.argb(128, 255, 255, 255));
+            int[] pa = new int[width * height];
+            int[] pb = new int[width * height];
+            opaque.getPixels(pa, 0, width, 0, 0, width, height);
+            translucent.getPixels(pb, 0, width, 0, 0, width, height);
+            long sumOpaque = 0;
+            long sumTranslucent = 0;
+            for (int j = 0; j < pa.length; j++) {
+                sumOpaque += Color.alpha(pa[j]);
+                sumTranslucent += Color.alpha(pb[j]);
+            }
+            // overlapping layers don't scale linearly, but the tint alpha must show
+            assertTrue(sumOpaque > 0);
+            assertTrue(sumTranslucent < sumOpaque * 0.75);
+        } finally {
+            opaque.recycle();
+            translucent.recycle();
+        }
+    }
+
+    // The BLINK/SINGLE composite is cached, it must still follow the color and size it's drawn at
+    @Test
+    public void compositeFollowsColorAndSize() {
+        RingRenderer ringRenderer = getRingRenderer(0);
+        LottieComposition lottieComposition = getComposition(0);
+        int width = lottieComposition.getBounds().width();
+        int height = lottieComposition.getBounds().height();
+        Rect dest = new Rect(0, 0, width, height);
+        Rect half = new Rect(0, 0, width / 2, height / 2);
+        Bitmap white = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Bitmap red = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Bitmap small = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        try {
+            ringRenderer.draw(new Canvas(white), dest, SpritePlayer.Mode.SINGLE, 0, Color.WHITE);
+            ringRenderer.draw(new Canvas(red), dest, SpritePlayer.Mode.SINGLE, 0, Color.RED);
+            ringRenderer.draw(new Canvas(small), half, SpritePlayer.Mode.SINGLE, 0, Color.RED);
+            int[] pw = new int[width * height];
+            int[] pr = new int[width * height];
+            int[] ps = new int[width * height];
+            white.getPixels(pw, 0, width, 0, 0, width, height);
+            red.getPixels(pr, 0, width, 0, 0, width, height);
+            small.getPixels(ps, 0, width, 0, 0, width, height);
+            int visible = 0;
+            for (int j = 0; j < pw.length; j++) {
+                assertEquals(Color.alpha(pw[j]), Color.alpha(pr[j]));
+                if (Color.alpha(pr[j]) > 0) {
+                    visible++;
+                    assertEquals(0, Color.green(pr[j]));
+                }
+                if (!half.contains(j % width, j / width)) assertEquals(0, Color.alpha(ps[j]));
+            }
+            assertTrue(visible > 0);
+        } finally {
+            white.recycle();
+            red.recycle();
+            small.recycle();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2019 Jorrit "Chainfire" Jongma
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package eu.chainfire.holeylight.animation;
+
+import com.airbnb.lottie.LottieComposition;
+import com.airbnb.lottie.LottieCompositionFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * Ownership and byte accounting of the cache. Sheets are small renders of the beyond0
+ * animation, in a few sizes so each gets its own key.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SpriteSheetCacheTest {
+    private static final SpritePlayer.Mode MODE = SpritePlayer.Mode.SWIRL;
+
+    private LottieComposition lottieComposition;
+    private SpriteSheetCache cache;
+
+    @Before
+    public void setUp() {
+        lottieComposition = LottieCompositionFactory.fromJsonStringSync(NotificationAnimation.jsonBeyond0, null).getValue();
+        assertNotNull(lottieComposition);
+        cache = new SpriteSheetCache(SpriteSheetCache.DEFAULT_BUDGET);
+    }
+
+    @After
+    public void tearDown() {
+        cache.clear();
+    }
+
+    private SpriteSheet build(int size) {
+        SpriteSheet spriteSheet = SpriteSheet.fromLottieComposition(lottieComposition, size, size, MODE);
+        assertNotNull(spriteSheet);
+        assertTrue(spriteSheet.isValid());
+        return spriteSheet;
+    }
+
+    @Test
+    public void putTake() {
+        SpriteSheet spriteSheet = build(64);
+        long bytes = spriteSheet.getByteCount();
+        cache.put(spriteSheet, MODE);
+        assertTrue(cache.contains(64, 64, MODE));
+        assertFalse(cache.contains(64, 64, SpritePlayer.Mode.BLINK));
+        assertEquals(bytes, cache.getByteCount());
+
+        assertSame(spriteSheet, cache.take(64, 64, MODE));
+        assertFalse(spriteSheet.isRecycled());
+        assertEquals(0, cache.getByteCount());
+        assertNull(cache.take(64, 64, MODE));
+        spriteSheet.release();
+    }
+
+    @Test
+    public void givesBackWhatWasCharged() {
+        SpriteSheet spriteSheet = build(64);
+        cache.put(spriteSheet, MODE);
+        long bytes = cache.getByteCount();
+
+        // changes what the sheet itself reports while it is cached
+        assertTrue(spriteSheet.encode());
+        assertTrue(spriteSheet.getByteCount() != bytes);
+
+        assertSame(spriteSheet, cache.take(64, 64, MODE));
+        assertEquals(0, cache.getByteCount());
+        spriteSheet.release();
+    }
+
+    @Test
+    public void replacesSameKey() {
+        SpriteSheet first = build(64);
+        SpriteSheet second = build(64);
+        long bytes = second.getByteCount();
+        cache.put(first, MODE);
+        cache.put(second, MODE);
+        assertTrue(first.isRecycled());
+        assertFalse(second.isRecycled());
+        assertEquals(bytes, cache.getByteCount());
+
+        // handing back the same sheet doesn't release it
+        cache.put(second, MODE);
+        assertFalse(second.isRecycled());
+        assertEquals(bytes, cache.getByteCount());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        SpriteSheet a = build(60);
+        SpriteSheet b = build(64);
+        SpriteSheet c = build(68);
+        long bytesA = a.getByteCount();
+        long bytesC = c.getByteCount();
+        cache.put(a, MODE);
+        cache.put(b, MODE);
+        cache.put(c, MODE);
+
+        // a is used again, b is now the least recently used
+        assertSame(a, cache.take(60, 60, MODE));
+        cache.put(a, MODE);
+
+        cache.setBudget(bytesA + bytesC);
+        assertTrue(b.isRecycled());
+        assertFalse(cache.contains(64, 64, MODE));
+        assertTrue(cache.contains(60, 60, MODE));
+        assertTrue(cache.contains(68, 68, MODE));
+        assertEquals(bytesA + bytesC, cache.getByteCount());
+    }
+
+    @Test
+    public void rejectsOverBudget() {
+        SpriteSheet spriteSheet = build(64);
+        cache.setBudget(spriteSheet.getByteCount() - 1);
+        cache.put(spriteSheet, MODE);
+        assertTrue(spriteSheet.isRecycled());
+        assertFalse(cache.contains(64, 64, MODE));
+        assertEquals(0, cache.getByteCount());
+    }
+
+    @Test
+    public void clearReleases() {
+        SpriteSheet a = build(60);
+        SpriteSheet b = build(64);
+        cache.put(a, MODE);
+        cache.put(b, MODE);
+        cache.clear();
+        assertTrue(a.isRecycled());
+        assertTrue(b.isRecycled());
+        assertEquals(0, cache.getByteCount());
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2019 Jorrit "Chainfire" Jongma
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package eu.chainfire.holeylight.animation;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import java.util.Arrays;
+
+/*
+ * A sprite's alpha channel as spans of non-transparent pixels. The cutout rings are mostly
+ * transparent with a thin anti-aliased band, so only a fraction of the pixels is stored.
+ * Spans of MIN_RUN or more identical values are stored as a single value, the rest literally.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" })
+public class AlphaRuns {
+    private static final int MIN_RUN = 4;
+
+    private final int top;
+    // index of the first span of each row, plus one past the last
+    private final int[] rows;
+    // two ints per span: (x << 16) | length, followed by the offset in alpha, or -1 - value
+    // for a span of identical values
+    private final int[] spans;
+    private final byte[] alpha;
+
+    // Encodes the area of the bitmap, only rows and columns within bounds (relative to the area)
+    // are looked at, everything outside them is expected to be transparent
+    public AlphaRuns(Bitmap bitmap, Rect area, Rect bounds) {
+        top = bounds.top;
+        rows = new int[Math.max(bounds.height(), 0) + 1];
+
+        int width = bounds.width();
+        int[] pixels = new int[Math.max(width, 0)];
+        int[] spans = new int[64];
+        byte[] alpha = new byte[256];
+        int spanCount = 0;
+        int alphaCount = 0;
+
+        for (int row = 0; row < rows.length - 1; row++) {
+            rows[row] = spanCount;
+            bitmap.getPixels(pixels, 0, width, area.left + bounds.left, area.top + bounds.top + row, width, 1);
+            int literal = -1;
+            int x = 0;
+            while (x < width) {
+                int value = pixels[x] >>> 24;
+                int run = 1;
+                while ((x + run < width) && ((pixels[x + run] >>> 24) == value)) run++;
+
+                if (value == 0) {
+                    literal = -1;
+                } else if (run >= MIN_RUN) {
+                    literal = -1;
+                    if (spanCount * 2 + 2 > spans.length) spans = Arrays.copyOf(spans, spans.length * 2);
+                    spans[spanCount * 2] = ((bounds.left + x) << 16) | run;
+                    spans[spanCount * 2 + 1] = -1 - value;
+                    spanCount++;
+                } else {
+                    if (literal == -1) {
+                        if (spanCount * 2 + 2 > spans.length) spans = Arrays.copyOf(spans, spans.length * 2);
+                        literal = spanCount++;
+                        spans[literal * 2] = (bounds.left + x) << 16;
+                        spans[literal * 2 + 1] = alphaCount;
+                    }
+                    if (alphaCount + run > alpha.length) alpha = Arrays.copyOf(alpha, Math.max(alpha.length * 2, alphaCount + run));
+                    Arrays.fill(alpha, alphaCount, alphaCount + run, (byte)value);
+                    alphaCount += run;
+                    spans[literal * 2] += run;
+                }
+                x += run;
+            }
+        }
+        rows[rows.length - 1] = spanCount;
+
+        this.spans = Arrays.copyOf(spans, spanCount * 2);
+        this.alpha = Arrays.copyOf(alpha, alphaCount);
+    }
+
+    // Writes the spans into an ALPHA_8 buffer, pixels between spans are left untouched
+    public void expand(byte[] target, int stride) {
+        for (int row = 0; row < rows.length - 1; row++) {
+            int offset = (top + row) * stride;
+            for (int span = rows[row]; span < rows[row + 1]; span++) {
+                int position = spans[span * 2];
+                int x = position >>> 16;
+                int length = position & 0xFFFF;
+                int source = spans[span * 2 + 1];
+                if (source >= 0) {
+                    System.arraycopy(alpha, source, target, offset + x, length);
+                } else {
+                    Arrays.fill(target, offset + x, offset + x + length, (byte)(-1 - source));
+                }
+            }
+        }
+    }
+
+    public long getByteCount() {
+        return (long)rows.length * 4 + (long)spans.length * 4 + alpha.length;
+    }
+}
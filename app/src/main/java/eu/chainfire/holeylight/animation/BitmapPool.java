@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2019 Jorrit "Chainfire" Jongma
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package eu.chainfire.holeylight.animation;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * Reuses bitmap memory between sprite sheet builds. Resizes (tuning, doze) otherwise throw away
+ * and allocate megabytes of atlas at a time. Released bitmaps are kept up to MAX_BYTES and
+ * handed out again through Bitmap.reconfigure, picking the smallest buffer that fits. A buffer
+ * more than MAX_REUSE_RATIO times the size needed isn't used, it would stay pinned behind a
+ * small bitmap while large requests allocate again.
+ *
+ * Only release bitmaps that are no longer referenced anywhere else.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" })
+public class BitmapPool {
+    private static final long MAX_BYTES = 16 * 1024 * 1024;
+    private static final int MAX_REUSE_RATIO = 2;
+
+    private static final List<Bitmap> pool = new ArrayList<>();
+    private static long bytes = 0;
+
+    private static long hits = 0;
+    private static long allocations = 0;
+    private static long discarded = 0;
+
+    public static Bitmap obtain(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = null;
+        synchronized (BitmapPool.class) {
+            long needed = (long)width * height * getBytesPerPixel(config);
+            int best = -1;
+            for (int i = 0; i < pool.size(); i++) {
+                long size = pool.get(i).getAllocationByteCount();
+                if ((size >= needed) && (size <= needed * MAX_REUSE_RATIO) && ((best == -1) || (size < pool.get(best).getAllocationByteCount()))) {
+                    best = i;
+                }
+            }
+            if (best >= 0) {
+                bitmap = pool.remove(best);
+                bytes -= bitmap.getAllocationByteCount();
+                hits++;
+            } else {
+                allocations++;
+            }
+        }
+        if (bitmap != null) {
+            try {
+                bitmap.reconfigure(width, height, config);
+                bitmap.eraseColor(Color.TRANSPARENT);
+                return bitmap;
+            } catch (IllegalArgumentException e) {
+                bitmap.recycle();
+                synchronized (BitmapPool.class) {
+                    hits--;
+                    allocations++;
+                }
+            }
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    public static void release(Bitmap bitmap) {
+        if ((bitmap == null) || bitmap.isRecycled()) return;
+        if (!bitmap.isMutable() || (bitmap.getConfig() == Bitmap.Config.HARDWARE)) {
+            bitmap.recycle();
+            return;
+        }
+        synchronized (BitmapPool.class) {
+            if (pool.contains(bitmap)) return;
+            pool.add(bitmap);
+            bytes += bitmap.getAllocationByteCount();
+            while ((bytes > MAX_BYTES) && (pool.size() > 0)) {
+                Bitmap oldest = pool.remove(0);
+                bytes -= oldest.getAllocationByteCount();
+                oldest.recycle();
+                discarded++;
+            }
+        }
+    }
+
+    private static int getBytesPerPixel(Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8: return 1;
+            case RGB_565:
+            case ARGB_4444: return 2;
+            case RGBA_F16: return 8;
+            default: return 4;
+        }
+    }
+
+    public static synchronized long getHits() {
+        return hits;
+    }
+
+    public static synchronized long getAllocations() {
+        return allocations;
+    }
+
+    public static synchronized float getHitRate() {
+        return (hits + allocations) > 0 ? (float)hits / (hits + allocations) : 0f;
+    }
+
+    public static synchronized String getStatistics() {
+        return String.format(Locale.ENGLISH, "pool: %d bitmaps, %d bytes, %d hits, %d allocations, %.1f%% hit rate, %d discarded",
+                pool.size(), bytes, hits, allocations, 100f * getHitRate(), discarded);
+    }
+
+    public static synchronized void clear() {
+        for (Bitmap bitmap : pool) {
+            bitmap.recycle();
+        }
+        pool.clear();
+        bytes = 0;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2019 Jorrit "Chainfire" Jongma
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package eu.chainfire.holeylight.animation;
+
+import android.os.SystemClock;
+
+import com.airbnb.lottie.LottieComposition;
+import com.airbnb.lottie.LottieCompositionFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import eu.chainfire.holeylight.misc.Slog;
+
+/*
+ * Compositions are parsed once per process, keyed by device profile. Parsing runs on Lottie's
+ * background executor. Listeners are called on the main thread: immediately if the composition
+ * is already available, otherwise when the (single) parse for that key completes. If that parse
+ * fails, pending listeners are called with null and the next get() for that key parses again.
+ *
+ * The automatically chosen keyframe interval is also kept here, per composition.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" })
+public class CompositionCache {
+    private static final String TAG = "CompositionCache";
+
+    public interface OnCompositionListener {
+        // lottieComposition is null if parsing failed
+        void onComposition(LottieComposition lottieComposition);
+    }
+
+    private static final Map<String, LottieComposition> compositions = new HashMap<>();
+    private static final Map<String, List<OnCompositionListener>> pending = new HashMap<>();
+    private static int parseCount = 0;
+    private static long parseNanos = 0;
+    private static int hitCount = 0;
+    private static final Map<LottieComposition, Integer> keyframeIntervals = new WeakHashMap<>();
+
+    public static void get(String key, String json, OnCompositionListener listener) {
+        LottieComposition lottieComposition;
+        synchronized (compositions) {
+            lottieComposition = compositions.get(key);
+            if (lottieComposition == null) {
+                List<OnCompositionListener> listeners = pending.get(key);
+                if (listeners == null) {
+                    listeners = new ArrayList<>();
+                    pending.put(key, listeners);
+                    parse(key, json);
+                }
+                listeners.add(listener);
+                return;
+            }
+            hitCount++;
+        }
+        listener.onComposition(lottieComposition);
+    }
+
+    private static void parse(String key, String json) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        LottieCompositionFactory.fromJsonString(json, null).addListener(result -> {
+            long nanos = SystemClock.elapsedRealtimeNanos() - start;
+            List<OnCompositionListener> listeners;
+            synchronized (compositions) {
+                compositions.put(key, result);
+                listeners = pending.remove(key);
+                parseCount++;
+                parseNanos += nanos;
+            }
+            Slog.d(TAG, String.format(Locale.ENGLISH, "parsed %s in %.1fms", key, nanos / 1000000f));
+            if (listeners != null) {
+                for (OnCompositionListener listener : listeners) {
+                    listener.onComposition(result);
+                }
+            }
+        }).addFailureListener(e -> {
+            // try again on the next get()
+            List<OnCompositionListener> listeners;
+            synchronized (compositions) {
+                listeners = pending.remove(key);
+            }
+            Slog.d(TAG, String.format(Locale.ENGLISH, "parsing %s failed: %s", key, e.getMessage()));
+            if (listeners != null) {
+                for (OnCompositionListener listener : listeners) {
+                    listener.onComposition(null);
+                }
+            }
+        });
+    }
+
+    // SpriteSheet.chooseKeyframeInterval() result for this composition. Computed outside the
+    // lock, two threads racing on a new composition both compute the same value.
+    public static int getKeyframeInterval(LottieComposition lottieComposition) {
+        Integer interval;
+        synchronized (keyframeIntervals) {
+            interval = keyframeIntervals.get(lottieComposition);
+        }
+        if (interval == null) {
+            interval = SpriteSheet.chooseKeyframeInterval(lottieComposition);
+            synchronized (keyframeIntervals) {
+                keyframeIntervals.put(lottieComposition, interval);
+            }
+        }
+        return interval;
+    }
+
+    // Listeners that are no longer interested in a pending parse
+    public static void removeListener(OnCompositionListener listener) {
+        synchronized (compositions) {
+            for (List<OnCompositionListener> listeners : pending.values()) {
+                listeners.remove(listener);
+            }
+        }
+    }
+
+    public static int getParseCount() {
+        synchronized (compositions) {
+            return parseCount;
+        }
+    }
+
+    // Total time from request to parsed composition, over all parses
+    public static long getParseNanos() {
+        synchronized (compositions) {
+            return parseNanos;
+        }
+    }
+
+    public static int getHitCount() {
+        synchronized (compositions) {
+            return hitCount;
+        }
+    }
+}
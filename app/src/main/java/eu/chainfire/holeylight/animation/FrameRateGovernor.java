@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2019 Jorrit "Chainfire" Jongma
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package eu.chainfire.holeylight.animation;
+
+import android.os.Debug;
+import android.os.SystemClock;
+
+import java.util.Locale;
+
+import eu.chainfire.holeylight.misc.Slog;
+
+/*
+ * Caps how often the animation loop wakes up, per power state (the Settings.getMode() slots).
+ * Playback stays tied to the clock, so a loop takes as long as it would at full rate, it just
+ * shows fewer of its frames. Keeps achieved fps and render thread CPU time per state.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" })
+public class FrameRateGovernor {
+    private static final String TAG = "FrameRateGovernor";
+
+    // Settings.getMode() values
+    public static final int STATES = 4;
+
+    private static final float REFRESH_RATE_DEFAULT = 60f;
+
+    private int state = -1;
+    private int limit = 0;
+    private long nextFrameNanos = 0;
+    private long earlyNanos = getEarlyNanos(REFRESH_RATE_DEFAULT);
+
+    private long loopStartNanos = 0;
+    private long loopStartCpuNanos = 0;
+    private int loopFrames = 0;
+
+    private final long[] statsFrames = new long[STATES];
+    private final long[] statsNanos = new long[STATES];
+    private final long[] statsCpuNanos = new long[STATES];
+
+    // fps <= 0 wakes on every vsync
+    public synchronized void set(int state, int fps) {
+        if ((state == this.state) && (fps == limit)) return;
+        this.state = state;
+        this.limit = fps;
+        nextFrameNanos = 0;
+        loopStartNanos = 0;
+    }
+
+    // Choreographer runs the callback on the first vsync after the delay, aim half a vsync early
+    private static long getEarlyNanos(float refreshRate) {
+        return (long)(1000000000f / refreshRate / 2f);
+    }
+
+    // Display.getRefreshRate()
+    public synchronized void setRefreshRate(float refreshRate) {
+        earlyNanos = getEarlyNanos(refreshRate > 0 ? refreshRate : REFRESH_RATE_DEFAULT);
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    // Called for every callback, with the rate the animation itself would like to be drawn at
+    public synchronized void onFrame(long frameTimeNanos, float sourceFps) {
+        if ((limit <= 0) || (sourceFps <= limit)) {
+            nextFrameNanos = 0;
+        } else {
+            nextFrameNanos = frameTimeNanos + 1000000000L / limit;
+        }
+    }
+
+    public synchronized void onFrameDrawn() {
+        loopFrames++;
+    }
+
+    // How long to wait before asking for the next callback
+    public synchronized long getDelayMillis() {
+        if (nextFrameNanos == 0) return 0;
+        long delay = nextFrameNanos - earlyNanos - System.nanoTime();
+        return delay > 0 ? delay / 1000000L : 0;
+    }
+
+    public synchronized void startLoop() {
+        loopStartNanos = SystemClock.elapsedRealtimeNanos();
+        loopStartCpuNanos = Debug.threadCpuTimeNanos();
+        loopFrames = 0;
+    }
+
+    // From the render thread, as the CPU time is that thread's
+    public synchronized void endLoop() {
+        if ((loopStartNanos == 0) || (state < 0) || (state >= STATES)) return;
+        statsFrames[state] += loopFrames;
+        statsNanos[state] += SystemClock.elapsedRealtimeNanos() - loopStartNanos;
+        statsCpuNanos[state] += Debug.threadCpuTimeNanos() - loopStartCpuNanos;
+        loopStartNanos = 0;
+    }
+
+    public synchronized float getAchievedFps(int state) {
+        if (statsNanos[state] == 0) return 0;
+        return statsFrames[state] * 1000000000f / statsNanos[state];
+    }
+
+    // Render thread CPU time per second of animation
+    public synchronized float getCpuMillisPerSecond(int state) {
+        if (statsNanos[state] == 0) return 0;
+        return statsCpuNanos[state] * 1000f / statsNanos[state];
+    }
+
+    public synchronized void report() {
+        for (int i = 0; i < STATES; i++) {
+            if (statsNanos[i] == 0) continue;
+            Slog.d(TAG, String.format(Locale.ENGLISH, "state %d%s: %.1f fps, cpu %.1fms/s over %.1fs",
+                    i, i == state ? String.format(Locale.ENGLISH, " [limit:%d]", limit) : "", getAchievedFps(i), getCpuMillisPerSecond(i), statsNanos[i] / 1000000000f));
+        }
+    }
+}
@@ -0,0 +1,425 @@
+/*
+ * Copyright (C) 2019 Jorrit "Chainfire" Jongma
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package eu.chainfire.holeylight.animation;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLSurface;
+import android.opengl.GLES20;
+import android.opengl.GLUtils;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import eu.chainfire.holeylight.misc.Slog;
+
+/*
+ * GLES2 renderer. Atlases are uploaded as textures once, and again only when more frames have
+ * streamed into them. Encoded sheets upload the expanded sprite when it changes. Tinting, the
+ * color segments and the background are all done by the fragment shader in a single pass,
+ * rather than a drawBitmap plus a drawArc per color.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" })
+public class GLRenderer implements SurfaceRenderer {
+    private static final String TAG = "GLRenderer";
+
+    private static final String VERTEX_SHADER =
+            "attribute vec2 aPosition;\n" +
+            "attribute vec2 aCoord;\n" +
+            "varying vec2 vCoord;\n" +
+            "void main() {\n" +
+            "    vCoord = aCoord;\n" +
+            "    gl_Position = vec4(aPosition, 0.0, 1.0);\n" +
+            "}\n";
+
+    // Color segments start at 12 o'clock and run clockwise, like the arcs drawn on the canvas
+    private static final String FRAGMENT_SHADER =
+            "precision mediump float;\n" +
+            "varying vec2 vCoord;\n" +
+            "uniform sampler2D uSprite;\n" +
+            "uniform sampler2D uNext;\n" +
+            "uniform sampler2D uColors;\n" +
+            "uniform vec4 uSpriteArea;\n" +
+            "uniform vec4 uNextArea;\n" +
+            "uniform float uBlend;\n" +
+            "uniform float uColorCount;\n" +
+            "uniform float uBackground;\n" +
+            "void main() {\n" +
+            "    float alpha = texture2D(uSprite, uSpriteArea.xy + vCoord * uSpriteArea.zw).a * (1.0 - uBlend);\n" +
+            "    if (uBlend > 0.0) alpha += texture2D(uNext, uNextArea.xy + vCoord * uNextArea.zw).a * uBlend;\n" +
+            "    float angle = mod(degrees(atan(vCoord.y - 0.5, vCoord.x - 0.5)) + 450.0, 360.0);\n" +
+            "    float segment = min(floor(angle * uColorCount / 360.0), uColorCount - 1.0);\n" +
+            "    vec3 color = texture2D(uColors, vec2((segment + 0.5) / uColorCount, 0.5)).rgb;\n" +
+            "    gl_FragColor = vec4(color * alpha, max(alpha, uBackground));\n" +
+            "}\n";
+
+    private EGLDisplay display = EGL14.EGL_NO_DISPLAY;
+    private EGLConfig config = null;
+    private EGLContext context = EGL14.EGL_NO_CONTEXT;
+    private EGLSurface surface = EGL14.EGL_NO_SURFACE;
+
+    private int program = 0;
+    private int aPosition;
+    private int aCoord;
+    private int uSprite;
+    private int uNext;
+    private int uColors;
+    private int uSpriteArea;
+    private int uNextArea;
+    private int uBlend;
+    private int uColorCount;
+    private int uBackground;
+
+    // x, y, u, v for each corner of dest, as a triangle strip
+    private final float[] vertices = new float[16];
+    private final FloatBuffer vertexBuffer = ByteBuffer.allocateDirect(16 * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+
+    private SpriteSheet textureSheet = null;
+    private boolean textureSheetEncoded = false;
+    private final Map<Bitmap, Integer> textures = new IdentityHashMap<>();
+    // available frames of the sheet when each atlas was last uploaded
+    private final Map<Bitmap, Integer> texturesAvailable = new IdentityHashMap<>();
+    // sprite and next, for encoded sheets that expand every sprite into the same bitmap
+    private final int[] streamTextures = new int[2];
+    private final SpriteSheet.Sprite[] streamSprites = new SpriteSheet.Sprite[2];
+
+    private final int[] colorTexture = new int[1];
+    private ByteBuffer colorBuffer = null;
+    private int[] lastColors = null;
+
+    private boolean makeCurrent(SurfaceHolder holder) {
+        Surface target = holder.getSurface();
+        if ((target == null) || !target.isValid()) return false;
+
+        if (context == EGL14.EGL_NO_CONTEXT) {
+            display = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+            int[] version = new int[2];
+            if ((display == EGL14.EGL_NO_DISPLAY) || !EGL14.eglInitialize(display, version, 0, version, 1)) {
+                fail("eglInitialize");
+                return false;
+            }
+            int[] attributes = new int[] {
+                    EGL14.EGL_RED_SIZE, 8,
+                    EGL14.EGL_GREEN_SIZE, 8,
+                    EGL14.EGL_BLUE_SIZE, 8,
+                    EGL14.EGL_ALPHA_SIZE, 8,
+                    EGL14.EGL_RENDERABLE_TYPE, EGL14.EGL_OPENGL_ES2_BIT,
+                    EGL14.EGL_SURFACE_TYPE, EGL14.EGL_WINDOW_BIT,
+                    EGL14.EGL_NONE
+            };
+            EGLConfig[] configs = new EGLConfig[1];
+            int[] count = new int[1];
+            if (!EGL14.eglChooseConfig(display, attributes, 0, configs, 0, 1, count, 0) || (count[0] == 0)) {
+                fail("eglChooseConfig");
+                return false;
+            }
+            config = configs[0];
+            context = EGL14.eglCreateContext(display, config, EGL14.EGL_NO_CONTEXT, new int[] { EGL14.EGL_CONTEXT_CLIENT_VERSION, 2, EGL14.EGL_NONE }, 0);
+            if ((context == null) || (context == EGL14.EGL_NO_CONTEXT)) {
+                context = EGL14.EGL_NO_CONTEXT;
+                fail("eglCreateContext");
+                return false;
+            }
+        }
+
+        if (surface == EGL14.EGL_NO_SURFACE) {
+            surface = EGL14.eglCreateWindowSurface(display, config, target, new int[] { EGL14.EGL_NONE }, 0);
+            if ((surface == null) || (surface == EGL14.EGL_NO_SURFACE)) {
+                surface = EGL14.EGL_NO_SURFACE;
+                fail("eglCreateWindowSurface");
+                return false;
+            }
+        }
+
+        if (!EGL14.eglMakeCurrent(display, surface, surface, context)) {
+            fail("eglMakeCurrent");
+            return false;
+        }
+
+        if ((program == 0) && !createProgram()) {
+            release();
+            return false;
+        }
+        return true;
+    }
+
+    private void fail(String call) {
+        Slog.d(TAG, String.format(Locale.ENGLISH, "%s failed: 0x%x", call, EGL14.eglGetError()));
+        release();
+    }
+
+    private static int loadShader(int type, String source) {
+        int shader = GLES20.glCreateShader(type);
+        GLES20.glShaderSource(shader, source);
+        GLES20.glCompileShader(shader);
+        int[] status = new int[1];
+        GLES20.glGetShaderiv(shader, GLES20.GL_COMPILE_STATUS, status, 0);
+        if (status[0] == 0) {
+            Slog.d(TAG, "shader: " + GLES20.glGetShaderInfoLog(shader));
+            GLES20.glDeleteShader(shader);
+            return 0;
+        }
+        return shader;
+    }
+
+    private boolean createProgram() {
+        int vertexShader = loadShader(GLES20.GL_VERTEX_SHADER, VERTEX_SHADER);
+        int fragmentShader = loadShader(GLES20.GL_FRAGMENT_SHADER, FRAGMENT_SHADER);
+        if ((vertexShader == 0) || (fragmentShader == 0)) return false;
+
+        program = GLES20.glCreateProgram();
+        GLES20.glAttachShader(program, vertexShader);
+        GLES20.glAttachShader(program, fragmentShader);
+        GLES20.glLinkProgram(program);
+        GLES20.glDeleteShader(vertexShader);
+        GLES20.glDeleteShader(fragmentShader);
+        int[] status = new int[1];
+        GLES20.glGetProgramiv(program, GLES20.GL_LINK_STATUS, status, 0);
+        if (status[0] == 0) {
+            Slog.d(TAG, "program: " + GLES20.glGetProgramInfoLog(program));
+            GLES20.glDeleteProgram(program);
+            program = 0;
+            return false;
+        }
+
+        aPosition = GLES20.glGetAttribLocation(program, "aPosition");
+        aCoord = GLES20.glGetAttribLocation(program, "aCoord");
+        uSprite = GLES20.glGetUniformLocation(program, "uSprite");
+        uNext = GLES20.glGetUniformLocation(program, "uNext");
+        uColors = GLES20.glGetUniformLocation(program, "uColors");
+        uSpriteArea = GLES20.glGetUniformLocation(program, "uSpriteArea");
+        uNextArea = GLES20.glGetUniformLocation(program, "uNextArea");
+        uBlend = GLES20.glGetUniformLocation(program, "uBlend");
+        uColorCount = GLES20.glGetUniformLocation(program, "uColorCount");
+        uBackground = GLES20.glGetUniformLocation(program, "uBackground");
+
+        // ALPHA_8 rows aren't padded
+        GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 1);
+        GLES20.glDisable(GLES20.GL_BLEND);
+
+        GLES20.glGenTextures(2, streamTextures, 0);
+        GLES20.glGenTextures(1, colorTexture, 0);
+        setupTexture(streamTextures[0], GLES20.GL_LINEAR);
+        setupTexture(streamTextures[1], GLES20.GL_LINEAR);
+        setupTexture(colorTexture[0], GLES20.GL_NEAREST);
+        lastColors = null;
+        return true;
+    }
+
+    private static void setupTexture(int texture, int filter) {
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, filter);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, filter);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_S, GLES20.GL_CLAMP_TO_EDGE);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_WRAP_T, GLES20.GL_CLAMP_TO_EDGE);
+    }
+
+    private void deleteTextures() {
+        if (textures.size() > 0) {
+            int[] ids = new int[textures.size()];
+            int i = 0;
+            for (Integer id : textures.values()) {
+                ids[i++] = id;
+            }
+            GLES20.glDeleteTextures(ids.length, ids, 0);
+            textures.clear();
+        }
+        texturesAvailable.clear();
+        streamSprites[0] = null;
+        streamSprites[1] = null;
+        textureSheet = null;
+    }
+
+    // Binds the sprite's bitmap to the texture unit and sets its area, uploading only what the
+    // texture doesn't have yet. Sprites are stored before available is raised, so whatever was
+    // available before the upload is in it.
+    private void bindSprite(SpriteSheet spriteSheet, SpriteSheet.Sprite sprite, int available, int unit, int uniform) {
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE0 + unit);
+        if (sprite.isEncoded()) {
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, streamTextures[unit]);
+            if (streamSprites[unit] != sprite) {
+                // all sprites expand to the same sheet sized bitmap
+                if (streamSprites[unit] == null) {
+                    GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, sprite.getBitmap(), 0);
+                } else {
+                    GLUtils.texSubImage2D(GLES20.GL_TEXTURE_2D, 0, 0, 0, sprite.getBitmap());
+                }
+                streamSprites[unit] = sprite;
+            }
+            setArea(uniform, spriteSheet.getWidth(), spriteSheet.getHeight(), sprite.getArea());
+            return;
+        }
+        Bitmap bitmap = sprite.getBitmap();
+        Integer texture = textures.get(bitmap);
+        if (texture == null) {
+            int[] id = new int[1];
+            GLES20.glGenTextures(1, id, 0);
+            setupTexture(id[0], GLES20.GL_LINEAR);
+            GLUtils.texImage2D(GLES20.GL_TEXTURE_2D, 0, bitmap, 0);
+            textures.put(bitmap, id[0]);
+            texturesAvailable.put(bitmap, available);
+        } else {
+            GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, texture);
+            Integer uploaded = texturesAvailable.get(bitmap);
+            if ((uploaded == null) || (uploaded != available)) {
+                // still streaming in, frames were added since
+                GLUtils.texSubImage2D(GLES20.GL_TEXTURE_2D, 0, 0, 0, bitmap);
+                texturesAvailable.put(bitmap, available);
+            }
+        }
+        setArea(uniform, bitmap.getWidth(), bitmap.getHeight(), sprite.getArea());
+    }
+
+    // One texel per color, tinted like SpritePlayer does
+    private void bindColors(int[] colors) {
+        GLES20.glActiveTexture(GLES20.GL_TEXTURE2);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, colorTexture[0]);
+        if (colors == lastColors) return;
+        int count = colors.length;
+        if ((colorBuffer == null) || (colorBuffer.capacity() < count * 4)) {
+            colorBuffer = ByteBuffer.allocateDirect(Math.max(count, 8) * 4).order(ByteOrder.nativeOrder());
+        }
+        colorBuffer.clear();
+        for (int color : colors) {
+            int tint = SpritePlayer.getTintColor(color);
+            colorBuffer.put((byte)Color.red(tint));
+            colorBuffer.put((byte)Color.green(tint));
+            colorBuffer.put((byte)Color.blue(tint));
+            colorBuffer.put((byte)255);
+        }
+        colorBuffer.position(0);
+        GLES20.glTexImage2D(GLES20.GL_TEXTURE_2D, 0, GLES20.GL_RGBA, count, 1, 0, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, colorBuffer);
+        lastColors = colors;
+    }
+
+    private static void setArea(int uniform, float width, float height, Rect area) {
+        GLES20.glUniform4f(uniform, area.left / width, area.top / height, area.width() / width, area.height() / height);
+    }
+
+    private void setVertices(Rect dest, int surfaceWidth, int surfaceHeight) {
+        float left = dest.left * 2f / surfaceWidth - 1f;
+        float right = dest.right * 2f / surfaceWidth - 1f;
+        float top = 1f - dest.top * 2f / surfaceHeight;
+        float bottom = 1f - dest.bottom * 2f / surfaceHeight;
+        float[] v = vertices;
+        v[0] = left;  v[1] = top;    v[2] = 0f;  v[3] = 0f;
+        v[4] = left;  v[5] = bottom; v[6] = 0f;  v[7] = 1f;
+        v[8] = right; v[9] = top;    v[10] = 1f; v[11] = 0f;
+        v[12] = right; v[13] = bottom; v[14] = 1f; v[15] = 1f;
+        vertexBuffer.position(0);
+        vertexBuffer.put(v);
+        vertexBuffer.position(0);
+        GLES20.glVertexAttribPointer(aPosition, 2, GLES20.GL_FLOAT, false, 16, vertexBuffer);
+        GLES20.glEnableVertexAttribArray(aPosition);
+        vertexBuffer.position(2);
+        GLES20.glVertexAttribPointer(aCoord, 2, GLES20.GL_FLOAT, false, 16, vertexBuffer);
+        GLES20.glEnableVertexAttribArray(aCoord);
+    }
+
+    private static final int[] WHITE = new int[] { Color.WHITE };
+
+    @Override
+    public boolean render(SurfaceHolder holder, SpriteSheet spriteSheet, SpriteSheet.Sprite sprite, SpriteSheet.Sprite next, float blend, Rect dest, int[] colors, boolean background) {
+        // hardware bitmaps can't be uploaded
+        if ((spriteSheet == null) || (sprite == null) || spriteSheet.isUploaded()) return clear(holder, background);
+        if (!makeCurrent(holder)) return false;
+
+        // encoding frees the atlases
+        boolean encoded = spriteSheet.isEncoded();
+        if ((spriteSheet != textureSheet) || (encoded != textureSheetEncoded)) {
+            deleteTextures();
+            textureSheet = spriteSheet;
+            textureSheetEncoded = encoded;
+        }
+        int available = spriteSheet.getAvailableFrames();
+
+        Rect frame = holder.getSurfaceFrame();
+        GLES20.glViewport(0, 0, frame.width(), frame.height());
+        GLES20.glClearColor(0f, 0f, 0f, background ? 1f : 0f);
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+
+        GLES20.glUseProgram(program);
+        bindSprite(spriteSheet, sprite, available, 0, uSpriteArea);
+        if ((next != null) && (blend > 0)) {
+            bindSprite(spriteSheet, next, available, 1, uNextArea);
+            GLES20.glUniform1f(uBlend, blend);
+        } else {
+            GLES20.glUniform1f(uBlend, 0f);
+        }
+        if ((colors == null) || (colors.length == 0)) colors = WHITE;
+        bindColors(colors);
+
+        GLES20.glUniform1i(uSprite, 0);
+        GLES20.glUniform1i(uNext, 1);
+        GLES20.glUniform1i(uColors, 2);
+        GLES20.glUniform1f(uColorCount, colors.length);
+        GLES20.glUniform1f(uBackground, background ? 1f : 0f);
+        setVertices(dest, frame.width(), frame.height());
+        GLES20.glDrawArrays(GLES20.GL_TRIANGLE_STRIP, 0, 4);
+
+        return EGL14.eglSwapBuffers(display, surface);
+    }
+
+    @Override
+    public boolean clear(SurfaceHolder holder, boolean background) {
+        if (!makeCurrent(holder)) return false;
+        Rect frame = holder.getSurfaceFrame();
+        GLES20.glViewport(0, 0, frame.width(), frame.height());
+        GLES20.glClearColor(0f, 0f, 0f, background ? 1f : 0f);
+        GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
+        return EGL14.eglSwapBuffers(display, surface);
+    }
+
+    // Destroying the context frees the program and textures
+    @Override
+    public void release() {
+        if (display != EGL14.EGL_NO_DISPLAY) {
+            EGL14.eglMakeCurrent(display, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+            if (surface != EGL14.EGL_NO_SURFACE) {
+                // disconnects from the surface, so it can be locked as a canvas again
+                EGL14.eglDestroySurface(display, surface);
+            }
+            if (context != EGL14.EGL_NO_CONTEXT) {
+                EGL14.eglDestroyContext(display, context);
+            }
+            EGL14.eglReleaseThread();
+        }
+        display = EGL14.EGL_NO_DISPLAY;
+        surface = EGL14.EGL_NO_SURFACE;
+        context = EGL14.EGL_NO_CONTEXT;
+        program = 0;
+        textures.clear();
+        texturesAvailable.clear();
+        streamSprites[0] = null;
+        streamSprites[1] = null;
+        textureSheet = null;
+        lastColors = null;
+    }
+}
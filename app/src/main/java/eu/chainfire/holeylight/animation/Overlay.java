@@ -39,11 +39,15 @@ import android.util.DisplayMetrics;
 import android.view.Gravity;
 import android.view.WindowManager;
 
+import java.util.Locale;
+
 import eu.chainfire.holeylight.BuildConfig;
 import eu.chainfire.holeylight.misc.AODControl;
 import eu.chainfire.holeylight.misc.Battery;
 import eu.chainfire.holeylight.misc.Display;
+import eu.chainfire.holeylight.misc.LeakTracker;
 import eu.chainfire.holeylight.misc.Settings;
+import eu.chainfire.holeylight.misc.Slog;
 import eu.chainfire.holeylight.service.AccessibilityService;
 import eu.chainfire.holeylight.ui.DetectCutoutActivity;
 
@@ -52,6 +56,8 @@ import static android.content.Context.POWER_SERVICE;
 
 @SuppressWarnings({"WeakerAccess", "unused", "FieldCanBeLocal"})
 public class Overlay {
+    private static final String TAG = "Overlay";
+
     private static Overlay instance;
     public static Overlay getInstance(Context context) {
         return getInstance(context, null);
@@ -67,6 +73,13 @@ public class Overlay {
             return instance;
         }
     }
+    public static void release(Context context) {
+        synchronized (Overlay.class) {
+            if ((instance != null) && (context instanceof AccessibilityService)) {
+                instance.releaseActualOverlay();
+            }
+        }
+    }
 
     private BroadcastReceiver broadcastReceiver = new BroadcastReceiver() {
         @Override
@@ -167,7 +180,10 @@ public class Overlay {
             this.windowToken = windowToken;
             if (spritePlayer != null) return;
 
+            long connected = SystemClock.elapsedRealtimeNanos();
             spritePlayer = new SpritePlayer(context);
+            Slog.d(TAG, String.format(Locale.ENGLISH, "SpritePlayer constructed in %.1fms", (SystemClock.elapsedRealtimeNanos() - connected) / 1000000f));
+            spritePlayer.setOnReadyListener(view -> Slog.d(TAG, String.format(Locale.ENGLISH, "service connect to overlay ready: %.1fms", (SystemClock.elapsedRealtimeNanos() - connected) / 1000000f)));
 
             initParams();
             animation = new NotificationAnimation(context, spritePlayer, new NotificationAnimation.OnNotificationAnimationListener() {
@@ -258,12 +274,25 @@ public class Overlay {
         evaluate();
     }
 
-    @Override
-    protected void finalize() throws Throwable {
-        if (spritePlayer != null) {
+    // Inverse of initActualOverlay, for when the accessibility service goes away
+    private void releaseActualOverlay() {
+        synchronized (this) {
+            if (spritePlayer == null) return;
+
+            handler.removeCallbacks(evaluateLoop);
             spritePlayer.getContext().getApplicationContext().unregisterReceiver(broadcastReceiver);
+            if (animation.isPlaying()) {
+                animation.stop(true);
+            }
+            removeOverlay();
+            animation.destroy();
+            spritePlayer.destroy();
+            animation = null;
+            spritePlayer = null;
+            windowToken = null;
+            lastState = false;
+            LeakTracker.report();
         }
-        super.finalize();
     }
 
     @SuppressLint("RtlHardcoded")
@@ -370,7 +399,9 @@ public class Overlay {
         );
         if (wantedEffective && visible && (colors.length > 0)) {
             int dpAdd = (doze ? 1 : 0);
-            SpritePlayer.Mode mode = settings.getAnimationMode(context, settings.getMode(charging, !doze));
+            int powerMode = settings.getMode(charging, !doze);
+            SpritePlayer.Mode mode = settings.getAnimationMode(context, powerMode);
+            spritePlayer.setFrameRateLimit(powerMode, settings.getFrameRate(powerMode));
             if (!lastState || colorsChanged() || mode != lastMode || (dpAdd != lastDpAdd)) {
                 spritePlayer.setMode(mode);
                 createOverlay();
@@ -380,7 +411,7 @@ public class Overlay {
                 } else {
                     animation.setHideAOD(false);
                 }
-                animation.setDpAdd(dpAdd); //TODO this causes SpriteSheet recreating; with hideAOD this means a delay that cause AOD to show for a second or so; without this it is a fraction of a second or not at all
+                animation.setDpAdd(dpAdd); // resizes the SpritePlayer; the current sheets are drawn a few pixels larger rather than rebuilt, so the AOD isn't exposed while waiting
                 animation.play(colors, false, (mode != lastMode));
                 lastColors = colors;
                 lastState = true;
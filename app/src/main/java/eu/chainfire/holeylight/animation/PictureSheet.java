@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2019 Jorrit "Chainfire" Jongma
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package eu.chainfire.holeylight.animation;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Picture;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+import android.graphics.Rect;
+
+import com.airbnb.lottie.LottieComposition;
+import com.airbnb.lottie.LottieDrawable;
+
+/*
+ * Lottie's drawing commands for each frame, recorded once into a Picture and replayed at
+ * whatever size the player has. A few kB per frame rather than an atlas, and nothing to rebuild
+ * when the size changes, but every draw replays the vectors.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" })
+public class PictureSheet implements VectorRenderer {
+    public static PictureSheet fromLottieComposition(LottieComposition lottieComposition) {
+        if (lottieComposition == null) return null;
+        LottieDrawable lottieDrawable = new LottieDrawable();
+        lottieDrawable.setComposition(lottieComposition);
+        int width = lottieDrawable.getIntrinsicWidth();
+        int height = lottieDrawable.getIntrinsicHeight();
+        int frames = (int)lottieComposition.getDurationFrames();
+        if ((width <= 0) || (height <= 0) || (frames <= 0)) return null;
+
+        Picture[] pictures = new Picture[frames];
+        for (int i = 0; i < frames; i++) {
+            pictures[i] = new Picture();
+            Canvas canvas = pictures[i].beginRecording(width, height);
+            lottieDrawable.setFrame(i);
+            lottieDrawable.draw(canvas);
+            pictures[i].endRecording();
+        }
+
+        // all frames on top of each other, like the BLINK/SINGLE sheets
+        Picture composite = new Picture();
+        Canvas canvas = composite.beginRecording(width, height);
+        for (Picture picture : pictures) {
+            canvas.drawPicture(picture);
+        }
+        composite.endRecording();
+
+        return new PictureSheet(width, height, (int)lottieComposition.getFrameRate(), pictures, composite);
+    }
+
+    private final int width;
+    private final int height;
+    private final int frameRate;
+    private final Picture[] pictures;
+    private final Picture composite;
+    private final Paint paint = new Paint();
+    private int lastColor = 0;
+
+    private PictureSheet(int width, int height, int frameRate, Picture[] pictures, Picture composite) {
+        this.width = width;
+        this.height = height;
+        this.frameRate = frameRate;
+        this.pictures = pictures;
+        this.composite = composite;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getFrames(SpritePlayer.Mode mode) {
+        switch (mode) {
+            case SWIRL: return pictures.length;
+            case BLINK: return 2;
+            default: return 1;
+        }
+    }
+
+    @Override
+    public int getFrameRate(SpritePlayer.Mode mode) {
+        return mode == SpritePlayer.Mode.SWIRL ? frameRate : 1;
+    }
+
+    @Override
+    public void draw(Canvas canvas, Rect dest, SpritePlayer.Mode mode, int frame, int color) {
+        Picture picture;
+        if (mode == SpritePlayer.Mode.SWIRL) {
+            picture = pictures[Math.max(Math.min(frame, pictures.length - 1), 0)];
+        } else if ((mode == SpritePlayer.Mode.SINGLE) || (frame == 0)) {
+            picture = composite;
+        } else {
+            return;
+        }
+
+        // the recorded colors are replaced, only their alpha is kept
+        if ((color != lastColor) || (paint.getColorFilter() == null)) {
+            paint.setColorFilter(new PorterDuffColorFilter(color, PorterDuff.Mode.SRC_IN));
+            lastColor = color;
+        }
+        int save = canvas.saveLayer(dest.left, dest.top, dest.right, dest.bottom, paint);
+        canvas.translate(dest.left, dest.top);
+        canvas.scale((float)dest.width() / width, (float)dest.height() / height);
+        canvas.drawPicture(picture);
+        canvas.restoreToCount(save);
+    }
+}
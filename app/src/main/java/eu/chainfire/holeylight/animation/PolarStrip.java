@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2019 Jorrit "Chainfire" Jongma
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package eu.chainfire.holeylight.animation;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PathMeasure;
+import android.graphics.Rect;
+
+/*
+ * Every cutout frame is drawn along the same ring (an ellipse, or a rounded rect for the pill
+ * shaped cutouts). Sampling a frame along that ring gives a narrow length x thickness strip
+ * holding everything that is ever non-transparent, the interior and exterior aren't stored.
+ * The strip is mapped back onto the ring with drawBitmapMesh.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" })
+public class PolarStrip {
+    // extra samples on either side of the stroke, for anti-aliasing
+    private static final int MARGIN = 2;
+
+    public static PolarStrip create(Path centerline, float thickness) {
+        PathMeasure pathMeasure = new PathMeasure(centerline, true);
+        float length = pathMeasure.getLength();
+        if ((length <= 0) || (thickness <= 0)) return null;
+        return new PolarStrip(pathMeasure, length, (int)Math.ceil(thickness) + MARGIN * 2);
+    }
+
+    private final int columns;
+    private final int rows;
+    // x, y, normal x, normal y at the center of each column
+    private final float[] samples;
+    // inner and outer vertex at the start of each column, plus the closing edge
+    private final float[] mesh;
+    private final Paint paint = new Paint();
+
+    private PolarStrip(PathMeasure pathMeasure, float length, int rows) {
+        this.columns = (int)Math.ceil(length);
+        this.rows = rows;
+        float step = length / columns;
+        float[] position = new float[2];
+        float[] tangent = new float[2];
+
+        samples = new float[columns * 4];
+        for (int i = 0; i < columns; i++) {
+            pathMeasure.getPosTan((i + 0.5f) * step, position, tangent);
+            samples[i * 4] = position[0];
+            samples[i * 4 + 1] = position[1];
+            samples[i * 4 + 2] = -tangent[1];
+            samples[i * 4 + 3] = tangent[0];
+        }
+
+        // drawBitmapMesh wants all vertices of the first mesh row, followed by the second
+        float half = rows / 2f;
+        mesh = new float[(columns + 1) * 2 * 2];
+        for (int i = 0; i <= columns; i++) {
+            pathMeasure.getPosTan((i % columns) * step, position, tangent);
+            float nx = -tangent[1];
+            float ny = tangent[0];
+            mesh[i * 2] = position[0] - nx * half;
+            mesh[i * 2 + 1] = position[1] - ny * half;
+            mesh[(columns + 1 + i) * 2] = position[0] + nx * half;
+            mesh[(columns + 1 + i) * 2 + 1] = position[1] + ny * half;
+        }
+
+        paint.setColor(Color.WHITE);
+        paint.setFilterBitmap(true);
+        paint.setAntiAlias(true);
+    }
+
+    // Samples the alpha of the area of the bitmap into an ALPHA_8 strip from the pool
+    public Bitmap encode(Bitmap bitmap, Rect area) {
+        int width = area.width();
+        int height = area.height();
+        int[] pixels = new int[width * height];
+        bitmap.getPixels(pixels, 0, width, area.left, area.top, width, height);
+
+        int[] strip = new int[columns * rows];
+        float half = rows / 2f;
+        for (int i = 0; i < columns; i++) {
+            float x = samples[i * 4];
+            float y = samples[i * 4 + 1];
+            float nx = samples[i * 4 + 2];
+            float ny = samples[i * 4 + 3];
+            for (int j = 0; j < rows; j++) {
+                float offset = j + 0.5f - half;
+                int alpha = sample(pixels, width, height, x + nx * offset, y + ny * offset);
+                strip[j * columns + i] = alpha << 24;
+            }
+        }
+
+        Bitmap ret = BitmapPool.obtain(columns, rows, Bitmap.Config.ALPHA_8);
+        ret.setPixels(strip, 0, columns, 0, 0, columns, rows);
+        return ret;
+    }
+
+    // Bilinear alpha at pixel coordinates, pixel centers at .5
+    private static int sample(int[] pixels, int width, int height, float x, float y) {
+        x -= 0.5f;
+        y -= 0.5f;
+        int x0 = (int)Math.floor(x);
+        int y0 = (int)Math.floor(y);
+        float fx = x - x0;
+        float fy = y - y0;
+        float top = alpha(pixels, width, height, x0, y0) * (1 - fx) + alpha(pixels, width, height, x0 + 1, y0) * fx;
+        float bottom = alpha(pixels, width, height, x0, y0 + 1) * (1 - fx) + alpha(pixels, width, height, x0 + 1, y0 + 1) * fx;
+        return Math.min(Math.round(top * (1 - fy) + bottom * fy), 255);
+    }
+
+    private static int alpha(int[] pixels, int width, int height, int x, int y) {
+        if ((x < 0) || (y < 0) || (x >= width) || (y >= height)) return 0;
+        return pixels[y * width + x] >>> 24;
+    }
+
+    // Maps a strip from encode() back onto the ring
+    public void draw(Canvas canvas, Bitmap strip) {
+        canvas.drawBitmapMesh(strip, columns, 1, mesh, 0, null, 0, paint);
+    }
+
+    public long getByteCount() {
+        return ((long)samples.length + mesh.length) * 4;
+    }
+}
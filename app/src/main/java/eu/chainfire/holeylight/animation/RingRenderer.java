@@ -0,0 +1,502 @@
+/*
+ * Copyright (C) 2019 Jorrit "Chainfire" Jongma
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package eu.chainfire.holeylight.animation;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.view.animation.PathInterpolator;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Draws the Samsung cutout animations directly from their keyframes, without rasterizing them
+ * into sprite sheets first. Only the handful of Lottie features those compositions use are
+ * supported: solid and shape layers with a static transform or keyframed position, a stroked
+ * ellipse or rounded rect with keyframed width, subtract masks, alpha track mattes and parenting.
+ * fromJson() returns null for anything else, in which case sprite sheets should be used.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" })
+public class RingRenderer implements VectorRenderer {
+    private static class Keyframe {
+        private float time;
+        private float[] start;
+        private float[] end;
+        private PathInterpolator interpolator;
+        private boolean hold;
+    }
+
+    private static class Property {
+        private final float[] value;
+        private final List<Keyframe> keyframes;
+        private final float[] out;
+
+        private Property(JSONObject json, float[] fallback) throws JSONException {
+            if (json == null) {
+                value = fallback;
+                keyframes = null;
+                out = null;
+            } else if (json.optInt("a", 0) == 0) {
+                value = toFloats(json.get("k"));
+                keyframes = null;
+                out = null;
+            } else {
+                value = null;
+                keyframes = new ArrayList<>();
+                JSONArray array = json.getJSONArray("k");
+                for (int i = 0; i < array.length(); i++) {
+                    JSONObject item = array.getJSONObject(i);
+                    Keyframe keyframe = new Keyframe();
+                    keyframe.time = (float)item.getDouble("t");
+                    keyframe.start = item.has("s") ? toFloats(item.get("s")) : null;
+                    keyframe.end = item.has("e") ? toFloats(item.get("e")) : null;
+                    keyframe.hold = item.optInt("h", 0) == 1;
+                    JSONObject o = item.optJSONObject("o");
+                    JSONObject in = item.optJSONObject("i");
+                    if ((o != null) && (in != null)) {
+                        keyframe.interpolator = new PathInterpolator(first(o.get("x")), first(o.get("y")), first(in.get("x")), first(in.get("y")));
+                    }
+                    keyframes.add(keyframe);
+                }
+                if ((keyframes.size() == 0) || (keyframes.get(0).start == null)) throw new JSONException("keyframes");
+                out = new float[keyframes.get(0).start.length];
+            }
+        }
+
+        private boolean isAnimated() {
+            return keyframes != null;
+        }
+
+        private float[] get(float frame) {
+            if (keyframes == null) return value;
+
+            for (int i = 0; i < keyframes.size() - 1; i++) {
+                Keyframe keyframe = keyframes.get(i);
+                Keyframe next = keyframes.get(i + 1);
+                if (frame >= next.time) continue;
+                if ((frame <= keyframe.time) || keyframe.hold) return keyframe.start;
+
+                float[] end = keyframe.end != null ? keyframe.end : next.start;
+                if (end == null) return keyframe.start;
+                float progress = (frame - keyframe.time) / (next.time - keyframe.time);
+                if (keyframe.interpolator != null) {
+                    progress = keyframe.interpolator.getInterpolation(progress);
+                }
+                for (int j = 0; j < out.length; j++) {
+                    out[j] = keyframe.start[j] + (end[j] - keyframe.start[j]) * progress;
+                }
+                return out;
+            }
+
+            Keyframe last = keyframes.get(keyframes.size() - 1);
+            if (last.start != null) return last.start;
+            Keyframe previous = keyframes.get(keyframes.size() - 2);
+            return previous.end != null ? previous.end : previous.start;
+        }
+
+        private float getMax() {
+            if (keyframes == null) return value[0];
+            float ret = 0;
+            for (Keyframe keyframe : keyframes) {
+                if (keyframe.start != null) ret = Math.max(ret, keyframe.start[0]);
+                if (keyframe.end != null) ret = Math.max(ret, keyframe.end[0]);
+            }
+            return ret;
+        }
+
+        private static float first(Object value) throws JSONException {
+            return value instanceof JSONArray ? (float)((JSONArray)value).getDouble(0) : ((Number)value).floatValue();
+        }
+
+        private static float[] toFloats(Object value) throws JSONException {
+            if (value instanceof JSONArray) {
+                JSONArray array = (JSONArray)value;
+                float[] ret = new float[array.length()];
+                for (int i = 0; i < ret.length; i++) {
+                    ret[i] = (float)array.getDouble(i);
+                }
+                return ret;
+            }
+            return new float[] { ((Number)value).floatValue() };
+        }
+    }
+
+    private static class Layer {
+        private int index;
+        private int parentIndex;
+        private Layer parent;
+        private boolean matteSource;
+        private boolean matted;
+        private float inPoint;
+        private float outPoint;
+        private float startTime;
+
+        private Property position;
+        private Property anchor;
+        private Property rotation;
+        private Property scale;
+        private Property opacity;
+
+        private final Path path = new Path();
+        private boolean fill;
+        private Property strokeWidth;
+        private float strokeOpacity = 1.0f;
+        private final List<Path> masks = new ArrayList<>();
+        // the parent's part of getMatrix(), each layer has its own so the chain doesn't allocate
+        private final Matrix parentMatrix = new Matrix();
+
+        private void getMatrix(float frame, Matrix matrix) {
+            float[] p = position.get(frame);
+            float[] a = anchor.get(frame);
+            float[] s = scale.get(frame);
+            matrix.reset();
+            matrix.preTranslate(p[0], p[1]);
+            matrix.preRotate(rotation.get(frame)[0]);
+            matrix.preScale(s[0] / 100f, s[1] / 100f);
+            matrix.preTranslate(-a[0], -a[1]);
+            if (parent != null) {
+                parent.getMatrix(frame, parentMatrix);
+                matrix.postConcat(parentMatrix);
+            }
+        }
+    }
+
+    private static final float[] ZERO = new float[] { 0, 0, 0 };
+    private static final float[] HUNDRED = new float[] { 100, 100, 100 };
+
+    public static RingRenderer fromJson(String json) {
+        if (json == null) return null;
+        try {
+            return new RingRenderer(new JSONObject(json));
+        } catch (JSONException | ClassCastException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int frames;
+    private final int frameRate;
+    private final List<Layer> layers = new ArrayList<>();
+
+    private final Matrix matrix = new Matrix();
+    private final Paint paint = new Paint();
+    private final Paint maskPaint = new Paint();
+    private final Paint mattePaint = new Paint();
+
+    // BLINK and SINGLE draw every frame on top of each other, which doesn't change between
+    // draws. Rendered once per size and color, then only the bitmap is drawn.
+    private Bitmap composite = null;
+    private int compositeColor = 0;
+
+    private RingRenderer(JSONObject root) throws JSONException {
+        width = root.getInt("w");
+        height = root.getInt("h");
+        frames = root.getInt("op") - root.getInt("ip");
+        frameRate = root.getInt("fr");
+        if ((root.optJSONArray("assets") != null) && (root.getJSONArray("assets").length() > 0)) throw new JSONException("assets");
+
+        JSONArray array = root.getJSONArray("layers");
+        for (int i = 0; i < array.length(); i++) {
+            layers.add(parseLayer(array.getJSONObject(i)));
+        }
+        for (int i = 0; i < layers.size(); i++) {
+            Layer layer = layers.get(i);
+            if (layer.parentIndex >= 0) {
+                for (Layer parent : layers) {
+                    if (parent.index == layer.parentIndex) layer.parent = parent;
+                }
+                if (layer.parent == null) throw new JSONException("parent");
+            }
+            if (layer.matted && ((i == 0) || !layers.get(i - 1).matteSource)) throw new JSONException("matte");
+        }
+
+        paint.setAntiAlias(true);
+        maskPaint.setAntiAlias(true);
+        maskPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.DST_OUT));
+        mattePaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.DST_IN));
+    }
+
+    private static Layer parseLayer(JSONObject json) throws JSONException {
+        Layer layer = new Layer();
+        layer.index = json.getInt("ind");
+        layer.parentIndex = json.optInt("parent", -1);
+        layer.matteSource = json.optInt("td", 0) == 1;
+        int matteMode = json.optInt("tt", 0);
+        if ((matteMode != 0) && (matteMode != 1)) throw new JSONException("matte mode");
+        layer.matted = matteMode == 1;
+        layer.inPoint = (float)json.getDouble("ip");
+        layer.outPoint = (float)json.getDouble("op");
+        layer.startTime = (float)json.optDouble("st", 0);
+        if ((json.optDouble("sr", 1) != 1) || (json.optInt("ddd", 0) != 0) || (json.optInt("bm", 0) != 0)) throw new JSONException("layer");
+
+        JSONObject ks = json.getJSONObject("ks");
+        layer.position = new Property(ks.optJSONObject("p"), ZERO);
+        layer.anchor = new Property(ks.optJSONObject("a"), ZERO);
+        layer.rotation = new Property(ks.optJSONObject("r"), ZERO);
+        layer.scale = new Property(ks.optJSONObject("s"), HUNDRED);
+        layer.opacity = new Property(ks.optJSONObject("o"), HUNDRED);
+
+        int type = json.getInt("ty");
+        if (type == 1) {
+            // solid
+            layer.path.addRect(new RectF(0, 0, json.getInt("sw"), json.getInt("sh")), Path.Direction.CW);
+            layer.fill = true;
+        } else if (type == 4) {
+            parseShapes(layer, json.getJSONArray("shapes"));
+        } else {
+            throw new JSONException("layer type");
+        }
+
+        if (json.optBoolean("hasMask", false)) {
+            JSONArray masks = json.getJSONArray("masksProperties");
+            for (int i = 0; i < masks.length(); i++) {
+                JSONObject mask = masks.getJSONObject(i);
+                if (!"s".equals(mask.optString("mode", "")) || mask.optBoolean("inv", false)) throw new JSONException("mask mode");
+                Property opacity = new Property(mask.optJSONObject("o"), HUNDRED);
+                JSONObject pt = mask.getJSONObject("pt");
+                if (opacity.isAnimated() || (opacity.get(0)[0] != 100) || (pt.optInt("a", 0) != 0)) throw new JSONException("mask");
+                layer.masks.add(parseBezier(pt.getJSONObject("k")));
+            }
+        }
+        return layer;
+    }
+
+    private static void parseShapes(Layer layer, JSONArray shapes) throws JSONException {
+        for (int i = 0; i < shapes.length(); i++) {
+            JSONObject shape = shapes.getJSONObject(i);
+            String type = shape.getString("ty");
+            if ("gr".equals(type)) {
+                parseShapes(layer, shape.getJSONArray("it"));
+            } else if ("el".equals(type) || "rc".equals(type)) {
+                Property size = new Property(shape.getJSONObject("s"), null);
+                Property position = new Property(shape.getJSONObject("p"), null);
+                if (size.isAnimated() || position.isAnimated()) throw new JSONException("shape");
+                float[] s = size.get(0);
+                float[] p = position.get(0);
+                RectF rect = new RectF(p[0] - s[0] / 2f, p[1] - s[1] / 2f, p[0] + s[0] / 2f, p[1] + s[1] / 2f);
+                if ("el".equals(type)) {
+                    layer.path.addOval(rect, Path.Direction.CW);
+                } else {
+                    Property roundness = new Property(shape.optJSONObject("r"), ZERO);
+                    if (roundness.isAnimated()) throw new JSONException("shape");
+                    // Lottie limits the corner radius to half the smallest side
+                    float radius = Math.min(roundness.get(0)[0], Math.min(s[0], s[1]) / 2f);
+                    layer.path.addRoundRect(rect, radius, radius, Path.Direction.CW);
+                }
+            } else if ("st".equals(type)) {
+                layer.strokeWidth = new Property(shape.getJSONObject("w"), null);
+                Property opacity = new Property(shape.optJSONObject("o"), HUNDRED);
+                if (opacity.isAnimated()) throw new JSONException("stroke");
+                layer.strokeOpacity = opacity.get(0)[0] / 100f;
+            } else if ("tr".equals(type)) {
+                // group transform, we only support the identity
+                float[] p = new Property(shape.optJSONObject("p"), ZERO).get(0);
+                float[] a = new Property(shape.optJSONObject("a"), ZERO).get(0);
+                float[] s = new Property(shape.optJSONObject("s"), HUNDRED).get(0);
+                float r = new Property(shape.optJSONObject("r"), ZERO).get(0)[0];
+                float o = new Property(shape.optJSONObject("o"), HUNDRED).get(0)[0];
+                if ((p[0] != 0) || (p[1] != 0) || (a[0] != 0) || (a[1] != 0) || (s[0] != 100) || (s[1] != 100) || (r != 0) || (o != 100)) {
+                    throw new JSONException("group transform");
+                }
+            } else {
+                throw new JSONException("shape type");
+            }
+        }
+        if (layer.strokeWidth == null) throw new JSONException("stroke");
+    }
+
+    private static Path parseBezier(JSONObject json) throws JSONException {
+        JSONArray v = json.getJSONArray("v");
+        JSONArray in = json.getJSONArray("i");
+        JSONArray out = json.getJSONArray("o");
+        Path path = new Path();
+        int count = v.length();
+        if (count == 0) return path;
+        path.moveTo((float)v.getJSONArray(0).getDouble(0), (float)v.getJSONArray(0).getDouble(1));
+        int segments = json.optBoolean("c", false) ? count : count - 1;
+        for (int i = 0; i < segments; i++) {
+            int from = i;
+            int to = (i + 1) % count;
+            float fx = (float)v.getJSONArray(from).getDouble(0);
+            float fy = (float)v.getJSONArray(from).getDouble(1);
+            float tx = (float)v.getJSONArray(to).getDouble(0);
+            float ty = (float)v.getJSONArray(to).getDouble(1);
+            path.cubicTo(
+                    fx + (float)out.getJSONArray(from).getDouble(0), fy + (float)out.getJSONArray(from).getDouble(1),
+                    tx + (float)in.getJSONArray(to).getDouble(0), ty + (float)in.getJSONArray(to).getDouble(1),
+                    tx, ty
+            );
+        }
+        if (json.optBoolean("c", false)) path.close();
+        return path;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    private Layer getRingLayer() {
+        for (Layer layer : layers) {
+            if (!layer.fill && !layer.matteSource) return layer;
+        }
+        return null;
+    }
+
+    // Centerline of the stroked shape in width x height coordinates, the ring every frame is
+    // drawn along. Used by SpriteSheet.encodePolar().
+    public boolean getCenterline(int width, int height, Path out) {
+        Layer layer = getRingLayer();
+        if (layer == null) return false;
+        Matrix matrix = new Matrix();
+        layer.getMatrix(0, matrix);
+        matrix.postScale((float)width / this.width, (float)height / this.height);
+        layer.path.transform(matrix, out);
+        return true;
+    }
+
+    // Widest the stroke gets, in width x height coordinates
+    public float getMaxStrokeWidth(int width, int height) {
+        Layer layer = getRingLayer();
+        if (layer == null) return 0;
+        return layer.strokeWidth.getMax() * Math.max((float)width / this.width, (float)height / this.height);
+    }
+
+    // Same frame layout as the sprite sheets for each mode
+    @Override
+    public int getFrames(SpritePlayer.Mode mode) {
+        switch (mode) {
+            case SWIRL: return frames;
+            case BLINK: return 2;
+            default: return 1;
+        }
+    }
+
+    @Override
+    public int getFrameRate(SpritePlayer.Mode mode) {
+        return mode == SpritePlayer.Mode.SWIRL ? frameRate : 1;
+    }
+
+    @Override
+    public void draw(Canvas canvas, Rect dest, SpritePlayer.Mode mode, int frame, int color) {
+        if (mode == SpritePlayer.Mode.SWIRL) {
+            int save = canvas.save();
+            canvas.translate(dest.left, dest.top);
+            canvas.scale((float)dest.width() / width, (float)dest.height() / height);
+            drawFrame(canvas, frame, color);
+            canvas.restoreToCount(save);
+        } else if ((mode == SpritePlayer.Mode.SINGLE) || (frame == 0)) {
+            Bitmap bitmap = getComposite(dest.width(), dest.height(), color);
+            if (bitmap != null) canvas.drawBitmap(bitmap, dest.left, dest.top, null);
+        }
+    }
+
+    private Bitmap getComposite(int destWidth, int destHeight, int color) {
+        if ((destWidth <= 0) || (destHeight <= 0)) return null;
+        if ((composite != null) && (composite.getWidth() == destWidth) && (composite.getHeight() == destHeight)) {
+            if (compositeColor == color) return composite;
+            composite.eraseColor(Color.TRANSPARENT);
+        } else {
+            // the old one may still be referenced by a frame in flight, leave it to the GC
+            composite = Bitmap.createBitmap(destWidth, destHeight, Bitmap.Config.ARGB_8888);
+        }
+        compositeColor = color;
+
+        // all frames on top of each other, like the BLINK/SINGLE sheets
+        Canvas canvas = new Canvas(composite);
+        canvas.scale((float)destWidth / width, (float)destHeight / height);
+        for (int i = 0; i < frames; i++) {
+            drawFrame(canvas, i, color);
+        }
+        return composite;
+    }
+
+    private void drawFrame(Canvas canvas, float frame, int color) {
+        // Lottie draws the last layer first
+        for (int i = layers.size() - 1; i >= 0; i--) {
+            Layer layer = layers.get(i);
+            if (layer.matteSource) continue;
+            drawLayer(canvas, layer, layer.matted ? layers.get(i - 1) : null, frame, color);
+        }
+    }
+
+    private void drawLayer(Canvas canvas, Layer layer, Layer matte, float frame, int color) {
+        float local = frame - layer.startTime;
+        if ((local < layer.inPoint) || (local >= layer.outPoint)) return;
+
+        float opacity = layer.opacity.get(local)[0] / 100f;
+        if (opacity <= 0) return;
+
+        float strokeWidth = layer.fill ? 0 : layer.strokeWidth.get(local)[0];
+        // Android draws a hairline for zero width, After Effects draws nothing
+        if (!layer.fill && (strokeWidth <= 0)) return;
+
+        int save = canvas.saveLayerAlpha(0, 0, width, height, Math.round(opacity * 255));
+
+        canvas.save();
+        layer.getMatrix(local, matrix);
+        canvas.concat(matrix);
+        paint.setColor(color);
+        if (layer.fill) {
+            paint.setStyle(Paint.Style.FILL);
+        } else {
+            paint.setStyle(Paint.Style.STROKE);
+            paint.setStrokeWidth(strokeWidth);
+            // on top of the alpha the color already has
+            paint.setAlpha(Math.round(Color.alpha(color) * layer.strokeOpacity));
+        }
+        canvas.drawPath(layer.path, paint);
+        for (Path mask : layer.masks) {
+            canvas.drawPath(mask, maskPaint);
+        }
+        canvas.restore();
+
+        if (matte != null) {
+            float matteLocal = frame - matte.startTime;
+            canvas.saveLayer(0, 0, width, height, mattePaint);
+            if ((matteLocal >= matte.inPoint) && (matteLocal < matte.outPoint)) {
+                matte.getMatrix(matteLocal, matrix);
+                canvas.concat(matrix);
+                paint.setColor(Color.WHITE);
+                paint.setStyle(Paint.Style.FILL);
+                paint.setAlpha(Math.round(matte.opacity.get(matteLocal)[0] * 2.55f));
+                canvas.drawPath(matte.path, paint);
+            }
+            canvas.restore();
+        }
+
+        canvas.restoreToCount(save);
+    }
+}
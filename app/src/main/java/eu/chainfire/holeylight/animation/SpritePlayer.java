@@ -18,7 +18,9 @@
 
 package eu.chainfire.holeylight.animation;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
@@ -29,16 +31,26 @@ import android.graphics.PorterDuff;
 import android.graphics.PorterDuffColorFilter;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.Rect;
+import android.hardware.display.DisplayManager;
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.os.SystemClock;
 import android.view.Choreographer;
+import android.view.Display;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.RelativeLayout;
 
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import androidx.annotation.NonNull;
+import eu.chainfire.holeylight.BuildConfig;
+import eu.chainfire.holeylight.misc.LeakTracker;
+import eu.chainfire.holeylight.misc.Slog;
 
 @SuppressWarnings({ "deprecation", "FieldCanBeLocal", "unused", "UnusedReturnValue" })
 public class SpritePlayer extends RelativeLayout {
@@ -54,31 +66,92 @@ public class SpritePlayer extends RelativeLayout {
         boolean onAnimationComplete();
     }
 
+    public interface OnReadyListener {
+        void onReady(SpritePlayer view);
+    }
+
+    private static final String TAG = "SpritePlayer";
+
+    // While a sheet is still streaming in, the playhead stays this many frames behind the loader
+    private static final int STREAM_LEAD_FRAMES = 2;
+
+    // Only lock, clear and draw the part of the surface that changes between frames
+    private static final boolean PARTIAL_DRAW = true;
+
+    // Sheets are drawn scaled rather than rebuilt if the new size is within this fraction of
+    // theirs, doze only adds a dp or so
+    private static final float RESCALE_MAX = 0.1f;
+
+    // Render and loader threads are shared by all players, started by the first one and quit
+    // when the last one is destroyed. Access with SpritePlayer.class held.
+    private static HandlerThread handlerThreadRender = null;
+    private static HandlerThread handlerThreadLoader = null;
+    private static int handlerThreadUsers = 0;
+
+    private static synchronized void startThreads() {
+        handlerThreadUsers++;
+        if (handlerThreadRender != null) return;
+        handlerThreadRender = new HandlerThread("SpritePlayer#Render");
+        handlerThreadRender.start();
+        handlerThreadLoader = new HandlerThread("SpritePlayer#Loader");
+        handlerThreadLoader.start();
+        LeakTracker.track(handlerThreadRender, "HandlerThread SpritePlayer#Render");
+        LeakTracker.track(handlerThreadLoader, "HandlerThread SpritePlayer#Loader");
+        new Handler(handlerThreadRender.getLooper()).post(() -> Thread.currentThread().setPriority(Thread.MAX_PRIORITY));
+    }
+
+    // quitSafely() still runs what the last player posted before destroying
+    private static synchronized void stopThreads() {
+        if ((handlerThreadUsers == 0) || (--handlerThreadUsers > 0)) return;
+        handlerThreadRender.quitSafely();
+        handlerThreadLoader.quitSafely();
+        LeakTracker.untrack(handlerThreadRender);
+        LeakTracker.untrack(handlerThreadLoader);
+        handlerThreadRender = null;
+        handlerThreadLoader = null;
+    }
+
     private final Object sync = new Object();
 
-    private final HandlerThread handlerThreadRender;
-    private final HandlerThread handlerThreadLoader;
     private final Handler handlerRender;
     private final Handler handlerLoader;
     private final Handler handlerMain;
-    private Choreographer choreographer;
+    // set from the render thread once its looper gets to us, frame requests are posted behind that
+    private volatile Choreographer choreographer = null;
+    private OnReadyListener onReadyListener = null;
+    private final long constructedNanos;
+    private long readyNanos = 0;
 
     private final SurfaceView surfaceView;
+    // the view's holder, unless a test draws into its own
+    private volatile SurfaceHolder surfaceHolder;
 
     private OnSpriteSheetNeededListener onSpriteSheetNeededListener = null;
-    private OnAnimationListener onAnimationListener = null;
+    private volatile OnAnimationListener onAnimationListener = null;
 
-    private int frame = -1;
+    // what the render thread draws from, see RenderState
+    private volatile RenderState renderState = null;
+    private int renderStateSerial = 0;
+    // bumped to restart the loop and to redraw the whole surface, the render thread compares
+    private int restart = 0;
+    private int invalidation = 0;
+
+    // guarded by sync, the render thread reads them through RenderState (or the volatiles directly)
     private SpriteSheet spriteSheetSwirl = null;
     private SpriteSheet spriteSheetBlink = null;
     private SpriteSheet spriteSheetSingle = null;
+    private volatile VectorRenderer vectorRenderer = null;
+    private volatile SurfaceRenderer surfaceRenderer = null;
     private int spriteSheetLoading = 0;
+    private final FrameRateGovernor frameRateGovernor = new FrameRateGovernor();
+    private final DisplayManager displayManager;
+    private final SpriteSheetCache spriteSheetCache = new SpriteSheetCache(SpriteSheetCache.DEFAULT_BUDGET);
     private volatile Point lastSpriteSheetRequest = new Point(0, 0);
     private Rect dest = new Rect();
     private Rect destDouble = new Rect();
-    private Paint paint = new Paint();
-    private boolean surfaceInvalidated = true;
-    private boolean draw = false;
+    // the frame path doesn't allocate, this is replaced by setDrawBackground()
+    private PorterDuffXfermode xfermodeColors = new PorterDuffXfermode(PorterDuff.Mode.SRC_ATOP);
+    private volatile boolean draw = false;
     private boolean wanted = false;
     private int width = -1;
     private int height = -1;
@@ -86,50 +159,235 @@ public class SpritePlayer extends RelativeLayout {
     private float speed = 1.0f;
     private Mode drawMode = Mode.SWIRL;
     private boolean drawBackground = false;
+    private volatile boolean hardwareRendering = false;
+    private volatile boolean runLengthEncoding = false;
+    private volatile RingRenderer polarGeometry = null;
+    private volatile boolean destroyed = false;
+    private volatile long timeToFirstFrameStart = 0;
+
+    // render thread only
+    private int frame = -1;
+    // the renderer connected to the surface by drawing to it
+    private SurfaceRenderer surfaceRendererConnected = null;
+    private Paint paint = new Paint();
+    private final PorterDuffXfermode xfermodeAdd = new PorterDuffXfermode(PorterDuff.Mode.ADD);
+    private long timeToFirstFrame = 0;
+    private Rect dirty = new Rect();
+    private Rect lastBounds = new Rect();
+    private Rect nextBounds = new Rect();
+    private int statsFrames = 0;
+    private long statsNanos = 0;
+    private long statsPixels = 0;
+    private long statsPixelsSurface = 0;
+    private int statsStates = 0;
+    private int statsLatencyFrames = 0;
+    private long statsLatencyNanos = 0;
+    private double statsLatencySquared = 0;
+    private long statsLatencyMax = 0;
+
+    /*
+     * Everything a frame is drawn from. Rebuilt as a whole under sync whenever any of it changes
+     * and read once per frame by the render thread without locking, so a frame never waits for
+     * the main thread and the main thread never waits for a frame.
+     */
+    private static final class RenderState {
+        final int serial;
+        final SpriteSheet spriteSheet;
+        final VectorRenderer vectorRenderer;
+        final SurfaceRenderer surfaceRenderer;
+        final Mode mode;
+        final int[] colors;
+        final PorterDuffColorFilter colorFilter;
+        final PorterDuffXfermode xfermodeColors;
+        final Rect dest;
+        final Rect destDouble;
+        final float speed;
+        final boolean drawBackground;
+        final boolean hardwareRendering;
+        final int restart;
+        final int invalidation;
+
+        // Called with sync held
+        RenderState(SpritePlayer player, RenderState previous) {
+            serial = ++player.renderStateSerial;
+            spriteSheet = player.getSpriteSheet();
+            vectorRenderer = player.vectorRenderer;
+            surfaceRenderer = player.surfaceRenderer;
+            mode = player.drawMode;
+            colors = player.colors;
+            if ((previous != null) && (previous.colors == colors)) {
+                colorFilter = previous.colorFilter;
+            } else if ((colors != null) && (colors.length == 1)) {
+                colorFilter = new PorterDuffColorFilter(colors[0], PorterDuff.Mode.SRC_ATOP);
+            } else {
+                colorFilter = null;
+            }
+            xfermodeColors = player.xfermodeColors;
+            dest = ((previous != null) && previous.dest.equals(player.dest)) ? previous.dest : new Rect(player.dest);
+            destDouble = ((previous != null) && previous.destDouble.equals(player.destDouble)) ? previous.destDouble : new Rect(player.destDouble);
+            speed = player.speed;
+            drawBackground = player.drawBackground;
+            hardwareRendering = player.hardwareRendering;
+            restart = player.restart;
+            invalidation = player.invalidation;
+        }
+    }
 
     public SpritePlayer(Context context) {
         super(context);
+        constructedNanos = SystemClock.elapsedRealtimeNanos();
 
-        handlerThreadRender = new HandlerThread("SpritePlayer#Render");
-        handlerThreadRender.start();
-        handlerRender = new Handler(handlerThreadRender.getLooper());
-        handlerThreadLoader = new HandlerThread("SpritePlayer#Loader");
-        handlerThreadLoader.start();
-        handlerLoader = new Handler(handlerThreadLoader.getLooper());
+        synchronized (SpritePlayer.class) {
+            startThreads();
+            handlerRender = new Handler(handlerThreadRender.getLooper());
+            handlerLoader = new Handler(handlerThreadLoader.getLooper());
+        }
         handlerMain = new Handler();
 
         paint.setAntiAlias(false);
         paint.setDither(false);
         paint.setFilterBitmap(false);
 
-        handlerRender.post(() -> {
-            Thread.currentThread().setPriority(Thread.MAX_PRIORITY);
-            choreographer = Choreographer.getInstance();
-        });
-        
+        handlerRender.post(this::onRenderThreadReady);
+
+        // the governor aims half a vsync early, that depends on the refresh rate
+        displayManager = (DisplayManager)context.getSystemService(Context.DISPLAY_SERVICE);
+        updateRefreshRate();
+        displayManager.registerDisplayListener(displayListener, handlerMain);
+
+        context.registerComponentCallbacks(componentCallbacks);
+
         RelativeLayout.LayoutParams params = new RelativeLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT);
 
         surfaceView = new SurfaceView(context);
         surfaceView.getHolder().setFormat(PixelFormat.RGBA_8888);
         surfaceView.getHolder().addCallback(surfaceCallback);
+        surfaceHolder = surfaceView.getHolder();
         surfaceView.setVisibility(View.VISIBLE);
         surfaceView.setLayoutParams(new RelativeLayout.LayoutParams(params));
         addView(surfaceView);
 
-        while (choreographer == null) {
-            try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                // no action
+        synchronized (sync) {
+            publishRenderState();
+        }
+        LeakTracker.track(this, "SpritePlayer");
+    }
+
+    private final DisplayManager.DisplayListener displayListener = new DisplayManager.DisplayListener() {
+        @Override
+        public void onDisplayAdded(int displayId) {
+        }
+
+        @Override
+        public void onDisplayRemoved(int displayId) {
+        }
+
+        @Override
+        public void onDisplayChanged(int displayId) {
+            if (displayId == Display.DEFAULT_DISPLAY) updateRefreshRate();
+        }
+    };
+
+    // Cached sheets, pooled bitmaps and composites are only there to make the next build faster.
+    // The system asking for memory back is a better use for them.
+    private final ComponentCallbacks2 componentCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_RUNNING_MODERATE) trimMemory();
+        }
+
+        @Override
+        public void onLowMemory() {
+            trimMemory();
+        }
+
+        @Override
+        public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        }
+    };
+
+    private void trimMemory() {
+        synchronized (sync) {
+            if (destroyed) return;
+            Slog.d(TAG, String.format(Locale.ENGLISH, "trim memory: %d bytes cached", spriteSheetCache.getByteCount()));
+            spriteSheetCache.clear();
+        }
+        // shared by all players, clearing these twice is harmless. Composites go to the pool,
+        // so that is cleared last.
+        SpriteSheet.clearComposites();
+        BitmapPool.clear();
+    }
+
+    private void updateRefreshRate() {
+        Display display = displayManager.getDisplay(Display.DEFAULT_DISPLAY);
+        if (display != null) frameRateGovernor.setRefreshRate(display.getRefreshRate());
+    }
+
+    // Call with sync held after changing anything RenderState holds
+    private void publishRenderState() {
+        renderState = new RenderState(this, renderState);
+    }
+
+    private void onRenderThreadReady() {
+        OnReadyListener listener;
+        synchronized (sync) {
+            choreographer = Choreographer.getInstance();
+            readyNanos = SystemClock.elapsedRealtimeNanos() - constructedNanos;
+            Slog.d(TAG, String.format(Locale.ENGLISH, "render thread ready after %.1fms", readyNanos / 1000000f));
+            listener = onReadyListener;
+        }
+        if (listener != null) handlerMain.post(() -> listener.onReady(this));
+    }
+
+    public boolean isReady() {
+        return choreographer != null;
+    }
+
+    // Nanoseconds from construction until frames could be scheduled, 0 if not ready yet
+    public long getReadyNanos() {
+        synchronized (sync) {
+            return readyNanos;
+        }
+    }
+
+    // Called on the main thread, right away (posted) if the player is already ready
+    public void setOnReadyListener(OnReadyListener onReadyListener) {
+        synchronized (sync) {
+            this.onReadyListener = onReadyListener;
+            if ((onReadyListener != null) && (choreographer != null)) {
+                handlerMain.post(() -> onReadyListener.onReady(this));
             }
         }
     }
 
-    @Override
-    protected void finalize() throws Throwable {
-        handlerThreadRender.quitSafely();
-        handlerThreadLoader.quitSafely();
-        super.finalize();
+    // Frees all sheets and stops the shared threads if this was the last player, the player
+    // can't be used after this
+    public void destroy() {
+        synchronized (sync) {
+            if (destroyed) return;
+            destroyed = true;
+            wanted = false;
+            evaluate();
+            onSpriteSheetNeededListener = null;
+            onAnimationListener = null;
+            onReadyListener = null;
+            resetSpriteSheet(null);
+            spriteSheetCache.clear();
+        }
+        // the threads are shared, only drop what we queued on them
+        handlerRender.removeCallbacksAndMessages(null);
+        handlerLoader.removeCallbacksAndMessages(null);
+        handlerMain.removeCallbacksAndMessages(null);
+        displayManager.unregisterDisplayListener(displayListener);
+        getContext().unregisterComponentCallbacks(componentCallbacks);
+        handlerRender.post(this::cancelNextFrame);
+        releaseSurfaceRenderer(surfaceRenderer, false);
+        stopThreads();
+        LeakTracker.untrack(this);
+    }
+
+    public boolean isDestroyed() {
+        return destroyed;
     }
 
     @Override
@@ -141,12 +399,18 @@ public class SpritePlayer extends RelativeLayout {
     private SurfaceHolder.Callback2 surfaceCallback = new SurfaceHolder.Callback2() {
         @Override
         public void surfaceRedrawNeeded(SurfaceHolder holder) {
-            surfaceInvalidated = true;
+            synchronized (sync) {
+                invalidation++;
+                publishRenderState();
+            }
         }
 
         @Override
         public void surfaceCreated(SurfaceHolder holder) {
-            surfaceInvalidated = true;
+            synchronized (sync) {
+                invalidation++;
+                publishRenderState();
+            }
         }
 
         @Override
@@ -160,11 +424,13 @@ public class SpritePlayer extends RelativeLayout {
 
         @Override
         public void surfaceDestroyed(SurfaceHolder holder) {
-            cancelNextFrame();
+            handlerRender.post(SpritePlayer.this::cancelNextFrame);
+            // the surface can't go away while a renderer is still connected to it
+            releaseSurfaceRenderer(surfaceRenderer, true);
         }
     };
 
-    private boolean colorsChanged(int[] lastColors) {
+    private static boolean colorsChanged(int[] lastColors, int[] colors) {
         if ((lastColors == null) != (colors == null)) return true;
         if (lastColors == null) return false;
         if (lastColors.length != colors.length) return true;
@@ -175,155 +441,564 @@ public class SpritePlayer extends RelativeLayout {
         return false;
     }
 
-    private void renderFrame(Canvas canvas, SpriteSheet spriteSheet, int frame) {
-        if (drawBackground) {
+    static int getTintColor(int color) {
+        // SRC_ATOP on a white sprite: translucent colors are blended with white, alpha comes from the sprite
+        int alpha = Color.alpha(color);
+        if (alpha == 255) return color;
+        return Color.argb(
+                255,
+                (Color.red(color) * alpha + 255 * (255 - alpha)) / 255,
+                (Color.green(color) * alpha + 255 * (255 - alpha)) / 255,
+                (Color.blue(color) * alpha + 255 * (255 - alpha)) / 255
+        );
+    }
+
+    private void renderFrame(Canvas canvas, RenderState state, SpriteSheet spriteSheet, int frame) {
+        if (state.drawBackground) {
             canvas.drawColor(Color.BLACK, PorterDuff.Mode.SRC);
         } else if (!canvas.isHardwareAccelerated()) {
             // on hardware accelerated canvas the content is already cleared
             canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
         }
-        if (spriteSheet != null) {
-            paint.setXfermode(null);
-            paint.setColor(Color.WHITE);
-            SpriteSheet.Sprite sprite = spriteSheet.getFrame(frame);
-            Bitmap bitmap = sprite.getBitmap();
-            if ((colors != null) && (colors.length == 1)) {
-                // fast single-color mode
-                paint.setColorFilter(new PorterDuffColorFilter(colors[0], PorterDuff.Mode.SRC_ATOP));
-                if (!bitmap.isRecycled()) {
-                    canvas.drawBitmap(sprite.getBitmap(), sprite.getArea(), dest, paint);
+        if (state.vectorRenderer != null) {
+            renderVector(canvas, state, frame);
+        } else if ((spriteSheet != null) && spriteSheet.beginDraw()) {
+            // keeps the bitmaps alive if the loader lets go of the sheet or changes its storage
+            // mid-draw, without waiting for either
+            try {
+                paint.setFilterBitmap((spriteSheet.getWidth() != state.dest.width()) || (spriteSheet.getHeight() != state.dest.height()));
+                int keyframe = spriteSheet.getKeyframe(frame);
+                float blend = spriteSheet.getKeyframeBlend(frame);
+                SpriteSheet.Sprite sprite = spriteSheet.getFrame(keyframe);
+                // encoded sprites share a bitmap, which a hardware canvas only reads when it posts
+                SpriteSheet.Sprite next = ((sprite != null) && (blend > 0) && !(sprite.isEncoded() && canvas.isHardwareAccelerated())) ? spriteSheet.getFrame(keyframe + 1) : null;
+                if (sprite != null) {
+                    renderSprite(canvas, state, sprite, next, blend);
                 }
-            } else {
-                // slower multi-colored mode
+            } finally {
+                spriteSheet.endDraw();
+            }
+        }
+    }
+
+    private void renderSprite(Canvas canvas, RenderState state, SpriteSheet.Sprite sprite, SpriteSheet.Sprite next, float blend) {
+        int[] colors = state.colors;
+        paint.setXfermode(null);
+        paint.setColor(Color.WHITE);
+        if ((colors != null) && (colors.length == 1)) {
+            // fast single-color mode
+            if (sprite.isAlphaOnly()) {
+                // alpha-only sprites are drawn in the paint's color
                 paint.setColorFilter(null);
-                if (!bitmap.isRecycled()) {
-                    canvas.drawBitmap(sprite.getBitmap(), sprite.getArea(), dest, paint);
-                }
+                paint.setColor(getTintColor(colors[0]));
+            } else {
+                paint.setColorFilter(state.colorFilter);
+            }
+            drawSprite(canvas, state.dest, sprite, next, blend);
+        } else {
+            // slower multi-colored mode
+            paint.setColorFilter(null);
+            drawSprite(canvas, state.dest, sprite, next, blend);
+            renderColors(canvas, state);
+        }
+    }
 
-                paint.setXfermode(new PorterDuffXfermode(drawBackground ? PorterDuff.Mode.MULTIPLY : PorterDuff.Mode.SRC_ATOP));
+    // In between keyframes the two are cross-faded: weighted by (1 - blend) and blend, and
+    // added together
+    private void drawSprite(Canvas canvas, Rect dest, SpriteSheet.Sprite sprite, SpriteSheet.Sprite next, float blend) {
+        if ((next == null) || (blend <= 0)) {
+            canvas.drawBitmap(sprite.getBitmap(), sprite.getArea(), dest, paint);
+            return;
+        }
+        int alpha = paint.getAlpha();
+        paint.setAlpha(Math.round(alpha * (1f - blend)));
+        canvas.drawBitmap(sprite.getBitmap(), sprite.getArea(), dest, paint);
+        paint.setAlpha(Math.round(alpha * blend));
+        paint.setXfermode(xfermodeAdd);
+        canvas.drawBitmap(next.getBitmap(), next.getArea(), dest, paint);
+        paint.setXfermode(null);
+        paint.setAlpha(alpha);
+    }
 
-                float startAngle = 0;
-                float anglePerColor = 360f / colors.length;
-                for (int i = 0; i < colors.length; i++) {
-                    // we use double size here because the arc may cut off the larger S10+ animation otherwise
-                    paint.setColor(colors[i]);
-                    canvas.drawArc(destDouble.left, destDouble.top, destDouble.right, destDouble.bottom, startAngle + 270 + (anglePerColor * i), anglePerColor, true, paint);
-                }
+    private void renderVector(Canvas canvas, RenderState state, int frame) {
+        int[] colors = state.colors;
+        if ((colors != null) && (colors.length == 1)) {
+            state.vectorRenderer.draw(canvas, state.dest, state.mode, frame, getTintColor(colors[0]));
+        } else {
+            state.vectorRenderer.draw(canvas, state.dest, state.mode, frame, Color.WHITE);
+            if (colors != null) renderColors(canvas, state);
+        }
+    }
+
+    private void renderColors(Canvas canvas, RenderState state) {
+        int[] colors = state.colors;
+        Rect destDouble = state.destDouble;
+        paint.setColorFilter(null);
+        paint.setXfermode(state.xfermodeColors);
+
+        float startAngle = 0;
+        float anglePerColor = 360f / colors.length;
+        for (int i = 0; i < colors.length; i++) {
+            // we use double size here because the arc may cut off the larger S10+ animation otherwise
+            paint.setColor(colors[i]);
+            canvas.drawArc(destDouble.left, destDouble.top, destDouble.right, destDouble.bottom, startAngle + 270 + (anglePerColor * i), anglePerColor, true, paint);
+        }
+    }
+
+    // Uploaded sheets can only be drawn on a hardware canvas. A surface can't switch between
+    // the two, setHardwareRendering() recreates it; until that has happened locking fails.
+    private Canvas lockSurfaceCanvas(RenderState state, Rect dirty) {
+        try {
+            if (state.hardwareRendering) {
+                return surfaceHolder.lockHardwareCanvas();
+            } else if (dirty != null) {
+                return surfaceHolder.lockCanvas(dirty);
+            } else {
+                return surfaceHolder.lockCanvas();
             }
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            Slog.d(TAG, "lock: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Sprite bounds to surface coordinates
+    private void mapBounds(Rect dest, SpriteSheet spriteSheet, Rect bounds, Rect out) {
+        float scaleX = (float)dest.width() / spriteSheet.getWidth();
+        float scaleY = (float)dest.height() / spriteSheet.getHeight();
+        out.set(
+                dest.left + (int)Math.floor(bounds.left * scaleX),
+                dest.top + (int)Math.floor(bounds.top * scaleY),
+                dest.left + (int)Math.ceil(bounds.right * scaleX),
+                dest.top + (int)Math.ceil(bounds.bottom * scaleY)
+        );
+        if (!out.isEmpty() && ((scaleX != 1.0f) || (scaleY != 1.0f))) {
+            // filtering
+            out.inset(-1, -1);
+        }
+    }
+
+    // Debug builds only, formatting allocates
+    private void logStatistics() {
+        if (!BuildConfig.DEBUG || (statsFrames == 0)) return;
+        Slog.d(TAG, String.format(Locale.ENGLISH, "draw %d frames: %.2fms/frame, %d px/frame, %.1f%% of surface [partial:%s]",
+                statsFrames, statsNanos / (statsFrames * 1000000f), statsPixels / statsFrames, 100f * statsPixels / statsPixelsSurface, PARTIAL_DRAW ? "on" : "off"));
+        frameRateGovernor.report();
+        if (statsLatencyFrames > 0) {
+            double mean = (double)statsLatencyNanos / statsLatencyFrames;
+            double deviation = Math.sqrt(Math.max(statsLatencySquared / statsLatencyFrames - mean * mean, 0));
+            Slog.d(TAG, String.format(Locale.ENGLISH, "callback latency: %.2fms avg, %.2fms sd, %.2fms max, %d state changes",
+                    mean / 1000000f, deviation / 1000000f, statsLatencyMax / 1000000f, statsStates));
         }
+        statsStates = 0;
+        statsLatencyFrames = 0;
+        statsLatencyNanos = 0;
+        statsLatencySquared = 0;
+        statsLatencyMax = 0;
+        statsFrames = 0;
+        statsNanos = 0;
+        statsPixels = 0;
+        statsPixelsSurface = 0;
     }
 
-    private Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+    // Runs a frame on the calling thread without scheduling the next one. Only for tests that
+    // own the player, frames otherwise only run on the render thread.
+    void drawFrame(long frameTimeNanos) {
+        frameCallback.step(frameTimeNanos);
+    }
+
+    // Tests draw into their own holder instead of the view's surface
+    void setSurfaceHolder(SurfaceHolder surfaceHolder) {
+        this.surfaceHolder = surfaceHolder;
+    }
+
+    private final FrameLoop frameCallback = new FrameLoop();
+
+    private class FrameLoop implements Choreographer.FrameCallback {
         private long startTimeNanos = 0;
+        private int lastRestart = 0;
+        private int lastInvalidation = -1;
+        private int lastSerial = -1;
+        private SpriteSheet lastSpriteSheetDrawn = null;
+        private SpriteSheet.Sprite lastSpriteDrawn = null;
+        private SpriteSheet.Sprite lastNextSpriteDrawn = null;
+        private float lastBlend = 0f;
         private int lastFrameDrawn = -1;
         private int[] lastColors = null;
 
         @Override
         public void doFrame(long frameTimeNanos) {
-            synchronized (sync) {
-                SpriteSheet spriteSheet = getSpriteSheet();
-                if (draw) {
-                    if (spriteSheet == null) {
-                        // Software canvas 2x quicker than hardware during tests
-                        Canvas canvas = surfaceView.getHolder().lockCanvas();
-                        if (canvas != null) {
+            if (!draw) return;
+            step(frameTimeNanos);
+            if (draw) callNextFrame(frameRateGovernor.getDelayMillis());
+        }
+
+        private void step(long frameTimeNanos) {
+            // how late Choreographer got to us, the jitter settings changes used to cause
+            long latency = System.nanoTime() - frameTimeNanos;
+
+            // read once, the whole frame is drawn from this
+            RenderState state = renderState;
+            if (state.serial != lastSerial) {
+                lastSerial = state.serial;
+                statsStates++;
+            }
+            if (state.restart != lastRestart) {
+                lastRestart = state.restart;
+                frame = -1;
+            }
+            doFrame(frameTimeNanos, state);
+
+            statsLatencyFrames++;
+            statsLatencyNanos += latency;
+            statsLatencySquared += (double)latency * latency;
+            if (latency > statsLatencyMax) statsLatencyMax = latency;
+        }
+
+        private void doFrame(long frameTimeNanos, RenderState state) {
+            SpriteSheet spriteSheet = state.spriteSheet;
+            SurfaceRenderer surfaceRenderer = state.surfaceRenderer;
+            boolean invalidated = (state.invalidation != lastInvalidation);
+            if (state.vectorRenderer != null) {
+                doVectorFrame(frameTimeNanos, state);
+            } else if (((spriteSheet == null) || (spriteSheet.getAvailableFrames() == 0)) && (surfaceRenderer != null)) {
+                surfaceRendererConnected = surfaceRenderer;
+                surfaceRenderer.clear(surfaceHolder, state.drawBackground);
+            } else if ((spriteSheet == null) || (spriteSheet.getAvailableFrames() == 0)) {
+                // Software canvas 2x quicker than hardware during tests
+                Canvas canvas = lockSurfaceCanvas(state, null);
+                if (canvas != null) {
+                    try {
+                        renderFrame(canvas, state, null, 0);
+                    } finally {
+                        try {
+                            surfaceHolder.unlockCanvasAndPost(canvas);
+                        } catch (IllegalStateException e) {
+                            // no action
+                        }
+                    }
+                }
+            } else {
+                double frameTime = (double)1000000000 / ((double)spriteSheet.getFrameRate() * (double)state.speed);
+                if (frame == -1) {
+                    startTimeNanos = frameTimeNanos;
+                    frame = 0;
+                    frameRateGovernor.startLoop();
+                } else {
+                    frame = (int)Math.floor((double)(frameTimeNanos - startTimeNanos)/frameTime);
+                }
+
+                if (!spriteSheet.isValid()) {
+                    // Still streaming in. Frame 0 is shown as soon as it exists, after that
+                    // we hold the playhead so it never catches up with the loader.
+                    int limit = spriteSheet.getSourceFrame(Math.max(spriteSheet.getAvailableFrames() - 1 - STREAM_LEAD_FRAMES, 0));
+                    if (frame > limit) {
+                        frame = limit;
+                        startTimeNanos = frameTimeNanos - (long)(limit * frameTime);
+                    }
+                }
+
+                int drawFrame = Math.max(Math.min(frame, spriteSheet.getPlaybackFrames() - 1), 0);
+                // identical frames share a sprite, no need to post the same content again
+                int keyframe = spriteSheet.getKeyframe(drawFrame);
+                float blend = spriteSheet.getKeyframeBlend(drawFrame);
+                SpriteSheet.Sprite sprite = spriteSheet.getFrame(keyframe);
+                SpriteSheet.Sprite next = blend > 0 ? spriteSheet.getFrame(keyframe + 1) : null;
+                boolean doDraw = ((sprite != lastSpriteDrawn) || (next != lastNextSpriteDrawn) || (blend != lastBlend) || colorsChanged(lastColors, state.colors) || invalidated);
+                boolean full = !PARTIAL_DRAW || state.hardwareRendering || (surfaceRenderer != null) || invalidated || colorsChanged(lastColors, state.colors) || (spriteSheet != lastSpriteSheetDrawn);
+                OnAnimationListener onAnimationListener = SpritePlayer.this.onAnimationListener;
+                if (onAnimationListener != null) {
+                    doDraw = onAnimationListener.onAnimationFrameStart(doDraw);
+                }
+                // the sheet may have been released under us, nothing to draw then
+                if (sprite == null) doDraw = false;
+                if (doDraw) {
+                    // outside the sprite's bounds the surface still holds what we drew last,
+                    // so only the union of the old and new bounds needs to be redrawn
+                    if (!full) {
+                        Rect dirtyBounds = ((spriteSheet.getKeyframeInterval() == 1) && ((lastFrameDrawn + 1) % spriteSheet.getFrames() == drawFrame)) ? spriteSheet.getDirtyBounds(drawFrame) : null;
+                        if (dirtyBounds != null) {
+                            mapBounds(state.dest, spriteSheet, dirtyBounds, dirty);
+                        } else {
+                            mapBounds(state.dest, spriteSheet, sprite.getBounds(), dirty);
+                            if (next != null) {
+                                mapBounds(state.dest, spriteSheet, next.getBounds(), nextBounds);
+                                dirty.union(nextBounds);
+                            }
+                            dirty.union(lastBounds);
+                        }
+                    }
+
+                    lastInvalidation = state.invalidation;
+                    lastSpriteSheetDrawn = spriteSheet;
+                    lastSpriteDrawn = sprite;
+                    lastNextSpriteDrawn = next;
+                    lastBlend = blend;
+                    lastFrameDrawn = drawFrame;
+                    lastColors = state.colors;
+                    mapBounds(state.dest, spriteSheet, sprite.getBounds(), lastBounds);
+                    if (next != null) {
+                        mapBounds(state.dest, spriteSheet, next.getBounds(), nextBounds);
+                        lastBounds.union(nextBounds);
+                    }
+
+                    // Software canvas 2x quicker than hardware during tests
+                    long start = SystemClock.elapsedRealtimeNanos();
+                    boolean posted = false;
+                    if (surfaceRenderer != null) {
+                        surfaceRendererConnected = surfaceRenderer;
+                        if (spriteSheet.beginDraw()) {
                             try {
-                                renderFrame(canvas, null, 0);
-                            } finally {
-                                try {
-                                    surfaceView.getHolder().unlockCanvasAndPost(canvas);
-                                } catch (IllegalStateException e) {
-                                    // no action
+                                // storage may have changed since, the sprites we compared may be gone
+                                SpriteSheet.Sprite drawSprite = spriteSheet.getFrame(keyframe);
+                                SpriteSheet.Sprite drawNext = (next != null) ? spriteSheet.getFrame(keyframe + 1) : null;
+                                if (drawSprite != null) {
+                                    posted = surfaceRenderer.render(surfaceHolder, spriteSheet, drawSprite, drawNext, blend, state.dest, state.colors, state.drawBackground);
                                 }
+                            } finally {
+                                spriteSheet.endDraw();
                             }
                         }
                     } else {
-                        if (frame == -1) {
-                            startTimeNanos = frameTimeNanos;
-                            frame = 0;
-                        } else {
-                            double frameTime = (double)1000000000 / ((double)spriteSheet.getFrameRate() * (double)speed);
-                            frame = (int)Math.floor((double)(frameTimeNanos - startTimeNanos)/frameTime);
-                        }
-
-                        int drawFrame = Math.max(Math.min(frame, spriteSheet.getFrames() - 1), 0);
-                        boolean doDraw = ((drawFrame != lastFrameDrawn) || colorsChanged(lastColors) || surfaceInvalidated);
-                        if (onAnimationListener != null) {
-                            doDraw = onAnimationListener.onAnimationFrameStart(doDraw);
+                        Canvas canvas = null;
+                        if (full) {
+                            canvas = lockSurfaceCanvas(state, null);
+                        } else if (!dirty.isEmpty()) {
+                            // may grow dirty, we draw whatever it ends up as
+                            canvas = lockSurfaceCanvas(state, dirty);
                         }
-                        if (doDraw) {
-                            surfaceInvalidated = false;
-                            lastFrameDrawn = drawFrame;
-                            lastColors = colors;
-
-                            // Software canvas 2x quicker than hardware during tests
-                            Canvas canvas = surfaceView.getHolder().lockCanvas();
-                            if (canvas != null) {
+                        if (canvas != null) {
+                            posted = true;
+                            try {
+                                if (!full) {
+                                    canvas.clipRect(dirty);
+                                }
+                                renderFrame(canvas, state, spriteSheet, drawFrame);
+                            } finally {
                                 try {
-                                    renderFrame(canvas, spriteSheet, drawFrame);
-                                } finally {
-                                    try {
-                                        surfaceView.getHolder().unlockCanvasAndPost(canvas);
-                                    } catch (IllegalStateException e) {
-                                        // no action
-                                    }
+                                    surfaceHolder.unlockCanvasAndPost(canvas);
+                                } catch (IllegalStateException e) {
+                                    // no action
                                 }
                             }
                         }
-                        if (onAnimationListener != null) {
-                            onAnimationListener.onAnimationFrameEnd(doDraw);
+                    }
+                    if (posted) {
+                        Rect surface = surfaceHolder.getSurfaceFrame();
+                        frameRateGovernor.onFrameDrawn();
+                        statsFrames++;
+                        statsNanos += SystemClock.elapsedRealtimeNanos() - start;
+                        statsPixels += full ? (long)surface.width() * surface.height() : (long)dirty.width() * dirty.height();
+                        statsPixelsSurface += (long)surface.width() * surface.height();
+                        if (timeToFirstFrameStart > 0) {
+                            timeToFirstFrame = SystemClock.elapsedRealtimeNanos() - timeToFirstFrameStart;
+                            timeToFirstFrameStart = 0;
+                            Slog.d(TAG, String.format(Locale.ENGLISH, "time to first visible frame: %.1fms", timeToFirstFrame / 1000000f));
                         }
-                        if (frame >= spriteSheet.getFrames()) {
-                            frame = -1;
-                            if ((onAnimationListener == null) || !onAnimationListener.onAnimationComplete()) {
-                                draw = false;
-                            }
+                    }
+                }
+                if (onAnimationListener != null) {
+                    onAnimationListener.onAnimationFrameEnd(doDraw);
+                }
+                frameRateGovernor.onFrame(frameTimeNanos, spriteSheet.getFrameRate() * state.speed);
+                if (frame >= spriteSheet.getPlaybackFrames()) {
+                    frameRateGovernor.endLoop();
+                    logStatistics();
+                    frame = -1;
+                    onLoopComplete(state);
+                }
+            }
+        }
+
+        // Vector rendering has no sprites to compare or bounds to track, every changed frame is a full redraw
+        private void doVectorFrame(long frameTimeNanos, RenderState state) {
+            VectorRenderer vectorRenderer = state.vectorRenderer;
+            if (surfaceRendererConnected != null) {
+                // vectors are drawn on the canvas, which can't lock the surface while it's connected
+                surfaceRendererConnected.release();
+                surfaceRendererConnected = null;
+            }
+            int frames = vectorRenderer.getFrames(state.mode);
+            double frameTime = (double)1000000000 / ((double)vectorRenderer.getFrameRate(state.mode) * (double)state.speed);
+            if (frame == -1) {
+                startTimeNanos = frameTimeNanos;
+                frame = 0;
+                frameRateGovernor.startLoop();
+            } else {
+                frame = (int)Math.floor((double)(frameTimeNanos - startTimeNanos)/frameTime);
+            }
+
+            int drawFrame = Math.max(Math.min(frame, frames - 1), 0);
+            boolean doDraw = ((drawFrame != lastFrameDrawn) || (lastSpriteSheetDrawn != null) || colorsChanged(lastColors, state.colors) || (state.invalidation != lastInvalidation));
+            OnAnimationListener onAnimationListener = SpritePlayer.this.onAnimationListener;
+            if (onAnimationListener != null) {
+                doDraw = onAnimationListener.onAnimationFrameStart(doDraw);
+            }
+            if (doDraw) {
+                lastInvalidation = state.invalidation;
+                lastSpriteSheetDrawn = null;
+                lastSpriteDrawn = null;
+                lastNextSpriteDrawn = null;
+                lastFrameDrawn = drawFrame;
+                lastColors = state.colors;
+
+                long start = SystemClock.elapsedRealtimeNanos();
+                Canvas canvas = lockSurfaceCanvas(state, null);
+                if (canvas != null) {
+                    try {
+                        renderFrame(canvas, state, null, drawFrame);
+                    } finally {
+                        try {
+                            surfaceHolder.unlockCanvasAndPost(canvas);
+                        } catch (IllegalStateException e) {
+                            // no action
                         }
                     }
+                    Rect surface = surfaceHolder.getSurfaceFrame();
+                    frameRateGovernor.onFrameDrawn();
+                    statsFrames++;
+                    statsNanos += SystemClock.elapsedRealtimeNanos() - start;
+                    statsPixels += (long)surface.width() * surface.height();
+                    statsPixelsSurface += (long)surface.width() * surface.height();
+                    if (timeToFirstFrameStart > 0) {
+                        timeToFirstFrame = SystemClock.elapsedRealtimeNanos() - timeToFirstFrameStart;
+                        timeToFirstFrameStart = 0;
+                        Slog.d(TAG, String.format(Locale.ENGLISH, "time to first visible frame: %.1fms [vector]", timeToFirstFrame / 1000000f));
+                    }
+                }
+            }
+            if (onAnimationListener != null) {
+                onAnimationListener.onAnimationFrameEnd(doDraw);
+            }
+            frameRateGovernor.onFrame(frameTimeNanos, vectorRenderer.getFrameRate(state.mode) * state.speed);
+            if (frame >= frames) {
+                frameRateGovernor.endLoop();
+                logStatistics();
+                frame = -1;
+                onLoopComplete(state);
+            }
+        }
+
+        // The only place a frame takes the lock, once per loop: the listener picks the next
+        // colors under it
+        private void onLoopComplete(RenderState state) {
+            synchronized (sync) {
+                // restarted in the meantime, the new loop carries on
+                if (state.restart != restart) return;
+                OnAnimationListener onAnimationListener = SpritePlayer.this.onAnimationListener;
+                if ((onAnimationListener == null) || !onAnimationListener.onAnimationComplete()) {
+                    draw = false;
                 }
-                if (draw) callNextFrame();
             }
         }
-    };
+    }
 
+    // Choreographer is only touched from the render thread, other threads post scheduleFrame
     private void cancelNextFrame() {
+        // destroy() may have dropped onRenderThreadReady before it ran, nothing was scheduled then
+        Choreographer choreographer = this.choreographer;
+        if (choreographer == null) return;
         choreographer.removeFrameCallback(frameCallback);
     }
 
     private void callNextFrame() {
+        callNextFrame(0);
+    }
+
+    private void callNextFrame(long delayMillis) {
         cancelNextFrame();
-        choreographer.postFrameCallback(frameCallback);
+        if (delayMillis > 0) {
+            choreographer.postFrameCallbackDelayed(frameCallback, delayMillis);
+        } else {
+            choreographer.postFrameCallback(frameCallback);
+        }
     }
 
+    private final Runnable scheduleFrame = () -> {
+        if (draw) {
+            callNextFrame();
+        } else {
+            cancelNextFrame();
+        }
+    };
+
     private void callOnSpriteSheetNeeded(int width, int height) {
         synchronized (sync) {
-            if (onSpriteSheetNeededListener == null) return;
+            if (destroyed || (onSpriteSheetNeededListener == null)) return;
+            if ((dest.width() != width) || (dest.height() != height)) {
+                dest.set(0, 0, width, height);
+                destDouble.set(dest.centerX() - width, dest.centerY() - height, dest.centerX() + width, dest.centerY() + height);
+                invalidation++;
+                publishRenderState();
+            }
             if (
                 (spriteSheetSwirl != null) && (spriteSheetSwirl.getWidth() == width) && (spriteSheetSwirl.getHeight() == height) &&
                 (spriteSheetBlink != null) && (spriteSheetBlink.getWidth() == width) && (spriteSheetBlink.getHeight() == height) &&
                 (spriteSheetSingle != null) && (spriteSheetSingle.getWidth() == width) && (spriteSheetSingle.getHeight() == height)
             ) return;
             if ((lastSpriteSheetRequest.x == width) && (lastSpriteSheetRequest.y == height)) return;
+            if (canRescale(width, height)) {
+                Slog.d(TAG, String.format(Locale.ENGLISH, "rescale %dx%d --> %dx%d", lastSpriteSheetRequest.x, lastSpriteSheetRequest.y, width, height));
+                return;
+            }
             lastSpriteSheetRequest.set(width, height);
+            timeToFirstFrameStart = SystemClock.elapsedRealtimeNanos();
             resetSpriteSheet(null);
-            dest.set(0, 0, width, height);
-            destDouble.set(dest.centerX() - width, dest.centerY() - height, dest.centerX() + width, dest.centerY() + height);
+            if (vectorRenderer != null) {
+                // drawn at any size, no sheets needed
+                invalidation++;
+                publishRenderState();
+                return;
+            }
+
+            // recently used sizes are still around
+            SpriteSheet cachedSwirl = spriteSheetCache.take(width, height, Mode.SWIRL);
+            SpriteSheet cachedBlink = spriteSheetCache.take(width, height, Mode.BLINK);
+            SpriteSheet cachedSingle = spriteSheetCache.take(width, height, Mode.SINGLE);
+            setSpriteSheet(cachedSwirl, Mode.SWIRL);
+            setSpriteSheet(cachedBlink, Mode.BLINK);
+            setSpriteSheet(cachedSingle, Mode.SINGLE);
+            if ((cachedSwirl != null) && (cachedBlink != null) && (cachedSingle != null)) return;
+
             spriteSheetLoading++;
             handlerLoader.post(() -> {
                 OnSpriteSheetNeededListener listener;
                 synchronized (sync) {
                     listener = onSpriteSheetNeededListener;
                 }
-                if (listener != null) {
-                    SpriteSheet spriteSheetSwirl = listener.onSpriteSheetNeeded(width, height, Mode.SWIRL);
-                    SpriteSheet spriteSheetBlink = listener.onSpriteSheetNeeded(width, height, Mode.BLINK);
-                    SpriteSheet spriteSheetSingle = listener.onSpriteSheetNeeded(width, height, Mode.SINGLE);
+                try {
+                    if (listener == null) return;
+
+                    if (cachedSwirl == null) {
+                        // SWIRL is published right away and drawn while its frames stream in
+                        SpriteSheet spriteSheetSwirl = listener.onSpriteSheetNeeded(width, height, Mode.SWIRL);
+                        if (!publishSpriteSheet(spriteSheetSwirl, Mode.SWIRL, width, height)) return;
+                        if (spriteSheetSwirl != null) {
+                            //noinspection StatementWithEmptyBody
+                            while (spriteSheetSwirl.buildNextFrame());
+                            prepareSpriteSheet(spriteSheetSwirl);
+                            synchronized (sync) {
+                                if (!spriteSheetSwirl.isValid() && (SpritePlayer.this.spriteSheetSwirl == spriteSheetSwirl)) {
+                                    setSpriteSheet(null, Mode.SWIRL);
+                                }
+                            }
+                        }
+                    }
+
+                    if (cachedBlink == null) {
+                        SpriteSheet spriteSheetBlink = listener.onSpriteSheetNeeded(width, height, Mode.BLINK);
+                        prepareSpriteSheet(spriteSheetBlink);
+                        if (!publishSpriteSheet(spriteSheetBlink, Mode.BLINK, width, height)) return;
+                    }
+
+                    if (cachedSingle == null) {
+                        SpriteSheet spriteSheetSingle = listener.onSpriteSheetNeeded(width, height, Mode.SINGLE);
+                        prepareSpriteSheet(spriteSheetSingle);
+                        if (!publishSpriteSheet(spriteSheetSingle, Mode.SINGLE, width, height)) return;
+                    }
+                } finally {
                     synchronized (sync) {
-                        setSpriteSheet(spriteSheetSwirl, Mode.SWIRL);
-                        setSpriteSheet(spriteSheetBlink, Mode.BLINK);
-                        setSpriteSheet(spriteSheetSingle, Mode.SINGLE);
                         spriteSheetLoading--;
-                        surfaceInvalidated = true;
                         evaluate();
                     }
                 }
@@ -331,6 +1006,66 @@ public class SpritePlayer extends RelativeLayout {
         }
     }
 
+    // Whether the current sheets can be drawn at the new size as they are. Exact sheets for
+    // that size are preferred if they are still cached.
+    private boolean canRescale(int width, int height) {
+        synchronized (sync) {
+            if ((vectorRenderer != null) || (spriteSheetSwirl == null) || (spriteSheetBlink == null) || (spriteSheetSingle == null)) return false;
+            int sheetWidth = lastSpriteSheetRequest.x;
+            int sheetHeight = lastSpriteSheetRequest.y;
+            if ((sheetWidth <= 0) || (sheetHeight <= 0)) return false;
+            for (SpriteSheet spriteSheet : new SpriteSheet[] { spriteSheetSwirl, spriteSheetBlink, spriteSheetSingle }) {
+                if ((spriteSheet.getWidth() != sheetWidth) || (spriteSheet.getHeight() != sheetHeight)) return false;
+            }
+            if (
+                    (Math.abs(width - sheetWidth) > sheetWidth * RESCALE_MAX) ||
+                    (Math.abs(height - sheetHeight) > sheetHeight * RESCALE_MAX)
+            ) return false;
+            return !(
+                    spriteSheetCache.contains(width, height, Mode.SWIRL) &&
+                    spriteSheetCache.contains(width, height, Mode.BLINK) &&
+                    spriteSheetCache.contains(width, height, Mode.SINGLE)
+            );
+        }
+    }
+
+    // Converts a completed sheet to the configured storage, on the loader thread after it has
+    // been saved to disk
+    private void prepareSpriteSheet(SpriteSheet spriteSheet) {
+        if (spriteSheet == null) return;
+        if (hardwareRendering && (surfaceRenderer == null)) {
+            spriteSheet.upload();
+        } else if (polarGeometry != null) {
+            spriteSheet.encodePolar(polarGeometry);
+        } else if (runLengthEncoding) {
+            spriteSheet.encode();
+        }
+    }
+
+    // Sets the sheet unless another size has been requested in the meantime, in which case it
+    // goes to the cache (or is released, if incomplete)
+    private boolean publishSpriteSheet(SpriteSheet spriteSheet, Mode mode, int width, int height) {
+        synchronized (sync) {
+            if (destroyed) {
+                if (spriteSheet != null) spriteSheet.release();
+                return false;
+            }
+            if ((lastSpriteSheetRequest.x != width) || (lastSpriteSheetRequest.y != height)) {
+                spriteSheetCache.put(spriteSheet, mode);
+                return false;
+            }
+            if ((spriteSheet != null) && spriteSheet.isUploaded() && !hardwareRendering) {
+                // hardware rendering was turned off in the meantime, a new request is queued
+                spriteSheet.release();
+                return false;
+            }
+            setSpriteSheet(spriteSheet, mode);
+            invalidation++;
+            evaluate();
+            return true;
+        }
+    }
+
     public void setOnSpriteSheetNeededListener(OnSpriteSheetNeededListener onSpriteSheetNeededListener) {
         synchronized (sync) {
             if (this.onSpriteSheetNeededListener == onSpriteSheetNeededListener) return;
@@ -353,38 +1088,50 @@ public class SpritePlayer extends RelativeLayout {
     private void resetSpriteSheet(Mode mode) {
         synchronized (sync) {
             if ((mode == null) || (drawMode == mode)) {
-                frame = -1;
+                restart++;
             }
             if ((mode == null) || (mode == Mode.SWIRL)) {
                 SpriteSheet old = spriteSheetSwirl;
                 spriteSheetSwirl = null;
-                if (old != null) old.recycle();
+                spriteSheetCache.put(old, Mode.SWIRL);
             }
             if ((mode == null) || (mode == Mode.BLINK)) {
                 SpriteSheet old = spriteSheetBlink;
                 spriteSheetBlink = null;
-                if (old != null) old.recycle();
+                spriteSheetCache.put(old, Mode.BLINK);
             }
             if ((mode == null) || (mode == Mode.SINGLE)) {
                 SpriteSheet old = spriteSheetSingle;
                 spriteSheetSingle = null;
-                if (old != null) old.recycle();
+                spriteSheetCache.put(old, Mode.SINGLE);
             }
             if ((mode == null) || (drawMode == mode)) {
-                surfaceInvalidated = true;
-                try {
-                    Canvas canvas = surfaceView.getHolder().lockCanvas();
-                    try {
-                        if (!canvas.isHardwareAccelerated()) {
-                            canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
-                        }
-                    } finally {
-                        surfaceView.getHolder().unlockCanvasAndPost(canvas);
-                    }
-                } catch (Throwable t) {
-                    // ...
+                invalidation++;
+                publishRenderState();
+                handlerRender.post(this::clearSurface);
+            }
+        }
+    }
+
+    // Only the render thread draws
+    private void clearSurface() {
+        RenderState state = renderState;
+        if (state.surfaceRenderer != null) {
+            surfaceRendererConnected = state.surfaceRenderer;
+            state.surfaceRenderer.clear(surfaceHolder, state.drawBackground);
+            return;
+        }
+        try {
+            Canvas canvas = lockSurfaceCanvas(state, null);
+            try {
+                if (!canvas.isHardwareAccelerated()) {
+                    canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
                 }
+            } finally {
+                surfaceHolder.unlockCanvasAndPost(canvas);
             }
+        } catch (Throwable t) {
+            // ...
         }
     }
 
@@ -414,27 +1161,29 @@ public class SpritePlayer extends RelativeLayout {
     public void setColors(int[] colors) {
         synchronized (sync) {
             this.colors = colors;
-            surfaceInvalidated = true;
+            invalidation++;
+            publishRenderState();
         }
     }
 
     private void startUpdating() {
         synchronized (sync) {
             draw = true;
-            callNextFrame();
+            handlerRender.post(scheduleFrame);
         }
     }
 
     private void stopUpdating() {
         synchronized (sync) {
             draw = false;
-            cancelNextFrame();
+            handlerRender.post(scheduleFrame);
         }
     }
 
     private void evaluate() {
         synchronized (sync) {
-            if (wanted && ((getSpriteSheet() != null) || (spriteSheetLoading > 0)) && (getWindowVisibility() == View.VISIBLE) && (getVisibility() == View.VISIBLE)) {
+            publishRenderState();
+            if (wanted && ((vectorRenderer != null) || (getSpriteSheet() != null) || (spriteSheetLoading > 0)) && (getWindowVisibility() == View.VISIBLE) && (getVisibility() == View.VISIBLE)) {
                 startUpdating();
             } else {
                 stopUpdating();
@@ -445,7 +1194,7 @@ public class SpritePlayer extends RelativeLayout {
     public void playAnimation() {
         synchronized (sync) {
             wanted = true;
-            frame = -1;
+            restart++;
             evaluate();
         }
     }
@@ -463,8 +1212,11 @@ public class SpritePlayer extends RelativeLayout {
 
     public void setSpeed(float speed) {
         synchronized (sync) {
-            frame = -1;
+            // applyDimensions() sets it on every settings change, that shouldn't restart the loop
+            if (this.speed == speed) return;
+            restart++;
             this.speed = speed;
+            publishRenderState();
         }
     }
 
@@ -475,9 +1227,9 @@ public class SpritePlayer extends RelativeLayout {
     public void setMode(Mode mode) {
         synchronized (sync) {
             if (mode != drawMode) {
-                frame = -1;
+                restart++;
                 drawMode = mode;
-                surfaceInvalidated = true;
+                invalidation++;
                 evaluate();
             }
         }
@@ -512,15 +1264,172 @@ public class SpritePlayer extends RelativeLayout {
         }
     }
 
+    // Opt-in: complete sheets are uploaded to GPU memory once and drawn through a hardware
+    // canvas. Saves the CPU copy of the atlases, but every frame redraws the whole surface.
+    // Changing it recreates the surface, as a surface can't switch between canvas types.
+    public void setHardwareRendering(boolean hardwareRendering) {
+        synchronized (sync) {
+            if (this.hardwareRendering == hardwareRendering) return;
+            if (destroyed) return;
+            this.hardwareRendering = hardwareRendering;
+            publishRenderState();
+            if (!hardwareRendering) {
+                // uploaded sheets can't be drawn on a software canvas
+                rebuildSpriteSheets();
+            }
+        }
+        handlerMain.post(this::recreateSurface);
+    }
+
+    // Call with sync held. Drops the current and cached sheets and requests a new one, for
+    // changes in how sheets are stored.
+    private void rebuildSpriteSheets() {
+        resetSpriteSheet(null);
+        spriteSheetCache.clear();
+        lastSpriteSheetRequest.set(0, 0);
+        if ((width != -1) && (height != -1)) {
+            callOnSpriteSheetNeeded(width, height);
+        }
+    }
+
+    // Drops the current and cached sheets and requests new ones, for when the
+    // OnSpriteSheetNeededListener changes how it builds them
+    public void invalidateSpriteSheets() {
+        synchronized (sync) {
+            if (!destroyed) rebuildSpriteSheets();
+        }
+    }
+
+    private void recreateSurface() {
+        if (destroyed) return;
+        if (!surfaceView.getHolder().getSurface().isValid()) return;
+        surfaceView.setVisibility(View.GONE);
+        surfaceView.setVisibility(View.VISIBLE);
+    }
+
+    // Keep sheets as run-length encoded alpha rather than atlases. Trades a little CPU per frame
+    // for a fraction of the memory, ignored when rendering on hardware. Changing it rebuilds the
+    // sheets.
+    public void setRunLengthEncoding(boolean runLengthEncoding) {
+        synchronized (sync) {
+            if (this.runLengthEncoding == runLengthEncoding) return;
+            this.runLengthEncoding = runLengthEncoding;
+            if (!destroyed) rebuildSpriteSheets();
+        }
+    }
+
+    public boolean isRunLengthEncoding() {
+        return runLengthEncoding;
+    }
+
+    // Keep sheets as strips sampled along the ring of the given composition, see PolarStrip.
+    // Takes precedence over run-length encoding, null to turn it off. Changing it rebuilds the
+    // sheets.
+    public void setPolarEncoding(RingRenderer geometry) {
+        synchronized (sync) {
+            if (this.polarGeometry == geometry) return;
+            this.polarGeometry = geometry;
+            if (!destroyed) rebuildSpriteSheets();
+        }
+    }
+
+    // Draw procedurally or from recorded pictures instead of from sprite sheets, null to go back
+    // to sprite sheets
+    public void setVectorRenderer(VectorRenderer vectorRenderer) {
+        synchronized (sync) {
+            this.vectorRenderer = vectorRenderer;
+            restart++;
+            invalidation++;
+            if ((vectorRenderer == null) && (width > 0) && (height > 0)) {
+                lastSpriteSheetRequest.set(0, 0);
+                callOnSpriteSheetNeeded(width, height);
+            }
+            evaluate();
+        }
+    }
+
+    public VectorRenderer getVectorRenderer() {
+        return vectorRenderer;
+    }
+
+    // Draw sprite sheet frames through the given renderer instead of locking a canvas, null to go
+    // back to the canvas. Vector renderers still use the canvas. Hardware rendering is ignored,
+    // sheets aren't uploaded while a surface renderer is set. Changing it recreates the surface,
+    // a surface a canvas has been locked on can't be drawn to by GL and vice versa.
+    public void setSurfaceRenderer(SurfaceRenderer surfaceRenderer) {
+        SurfaceRenderer old;
+        synchronized (sync) {
+            old = this.surfaceRenderer;
+            if (old == surfaceRenderer) return;
+            if (destroyed) return;
+            this.surfaceRenderer = surfaceRenderer;
+            invalidation++;
+            publishRenderState();
+            if (hardwareRendering) {
+                // uploaded sheets can only be drawn on a hardware canvas, and are only made
+                // without a surface renderer
+                rebuildSpriteSheets();
+            }
+        }
+        releaseSurfaceRenderer(old, false);
+        handlerMain.post(this::recreateSurface);
+    }
+
+    public SurfaceRenderer getSurfaceRenderer() {
+        return surfaceRenderer;
+    }
+
+    // Renderers are only used from the render thread
+    private void releaseSurfaceRenderer(SurfaceRenderer surfaceRenderer, boolean wait) {
+        if (surfaceRenderer == null) return;
+        CountDownLatch released = new CountDownLatch(1);
+        if (!handlerRender.post(() -> {
+            surfaceRenderer.release();
+            if (surfaceRendererConnected == surfaceRenderer) surfaceRendererConnected = null;
+            released.countDown();
+        })) return;
+        if (wait) {
+            try {
+                released.await(1000, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Caps the frame rate while in the given power state (Settings.getMode()), 0 for every vsync
+    public void setFrameRateLimit(int state, int fps) {
+        frameRateGovernor.set(state, fps);
+    }
+
+    public FrameRateGovernor getFrameRateGovernor() {
+        return frameRateGovernor;
+    }
+
+    public boolean isHardwareRendering() {
+        return hardwareRendering;
+    }
+
+    public void setSpriteSheetCacheBudget(long bytes) {
+        spriteSheetCache.setBudget(bytes);
+    }
+
+    public long getTimeToFirstFrameNanos() {
+        return timeToFirstFrame;
+    }
+
     public void setDrawBackground(boolean drawBackground) {
         synchronized (sync) {
             if (this.drawBackground != drawBackground) {
                 this.drawBackground = drawBackground;
-                surfaceInvalidated = true;
+                xfermodeColors = new PorterDuffXfermode(drawBackground ? PorterDuff.Mode.MULTIPLY : PorterDuff.Mode.SRC_ATOP);
+                invalidation++;
+                publishRenderState();
             }
         }
     }
 
+    // Frames don't hold this while drawing, it only guards the state RenderState is built from
     public Object getSynchronizer() {
         return sync;
     }
@@ -22,103 +22,397 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Path;
 import android.graphics.Rect;
+import android.os.SystemClock;
 
 import com.airbnb.lottie.LottieComposition;
 import com.airbnb.lottie.LottieDrawable;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import eu.chainfire.holeylight.misc.LeakTracker;
+import eu.chainfire.holeylight.misc.Slog;
 
 @SuppressWarnings({ "WeakerAccess", "unused", "UnusedReturnValue" })
 public class SpriteSheet {
+    public interface OnSpriteSheetCompleteListener {
+        void onSpriteSheetComplete(SpriteSheet spriteSheet);
+    }
+
+    // Returns a complete sheet from disk if available, otherwise a streaming sheet that is saved
+    // to disk once it completes. See streamFromLottieComposition.
+    public static SpriteSheet fromLottieComposition(LottieComposition lottieComposition, int width, int height, SpritePlayer.Mode mode, SpriteSheetDiskCache diskCache) {
+        return fromLottieComposition(lottieComposition, width, height, mode, diskCache, 1);
+    }
+
+    // SWIRL keeps only every keyframeInterval-th frame, 0 picks the interval automatically.
+    // See getKeyframe().
+    public static SpriteSheet fromLottieComposition(LottieComposition lottieComposition, int width, int height, SpritePlayer.Mode mode, SpriteSheetDiskCache diskCache, int keyframeInterval) {
+        int interval = 1;
+        if (mode == SpritePlayer.Mode.SWIRL) {
+            interval = keyframeInterval > 0 ? keyframeInterval : CompositionCache.getKeyframeInterval(lottieComposition);
+        }
+        if (diskCache != null) {
+            SpriteSheet ss = diskCache.load(width, height, mode, interval);
+            if (ss != null) return ss;
+        }
+        SpriteSheet ss = streamFromLottieComposition(lottieComposition, width, height, mode, ALPHA_ONLY, WORKERS, interval);
+        if ((ss != null) && (diskCache != null)) {
+            ss.setOnSpriteSheetCompleteListener(spriteSheet -> diskCache.save(spriteSheet, mode));
+        }
+        return ss;
+    }
+
     public static SpriteSheet fromLottieComposition(LottieComposition lottieComposition, int width, int height, SpritePlayer.Mode mode) {
+        return fromLottieComposition(lottieComposition, width, height, mode, ALPHA_ONLY);
+    }
+
+    public static SpriteSheet fromLottieComposition(LottieComposition lottieComposition, int width, int height, SpritePlayer.Mode mode, boolean alphaOnly) {
+        return fromLottieComposition(lottieComposition, width, height, mode, alphaOnly, WORKERS);
+    }
+
+    public static SpriteSheet fromLottieComposition(LottieComposition lottieComposition, int width, int height, SpritePlayer.Mode mode, boolean alphaOnly, int workers) {
+        return fromLottieComposition(lottieComposition, width, height, mode, alphaOnly, workers, 1);
+    }
+
+    public static SpriteSheet fromLottieComposition(LottieComposition lottieComposition, int width, int height, SpritePlayer.Mode mode, boolean alphaOnly, int workers, int keyframeInterval) {
+        SpriteSheet ss = streamFromLottieComposition(lottieComposition, width, height, mode, alphaOnly, workers, keyframeInterval);
+        if (ss == null) return null;
+
+        //noinspection StatementWithEmptyBody
+        while (ss.buildNextFrame());
+
+        if (ss.isValid()) {
+            return ss;
+        } else {
+            ss.release();
+            return null;
+        }
+    }
+
+    // SWIRL sheets are returned empty, frames are added by calling buildNextFrame() until it returns
+    // false, and can be drawn as soon as they are available. BLINK and SINGLE sheets composite all
+    // frames into one, so those are returned complete. Frames are rendered ahead by up to
+    // workers threads from the shared pool, and committed in order by the caller.
+    public static SpriteSheet streamFromLottieComposition(LottieComposition lottieComposition, int width, int height, SpritePlayer.Mode mode, boolean alphaOnly, int workers) {
+        return streamFromLottieComposition(lottieComposition, width, height, mode, alphaOnly, workers, 1);
+    }
+
+    public static SpriteSheet streamFromLottieComposition(LottieComposition lottieComposition, int width, int height, SpritePlayer.Mode mode, boolean alphaOnly, int workers, int keyframeInterval) {
         SpriteSheet ss;
+        Bitmap.Config config = alphaOnly ? Bitmap.Config.ALPHA_8 : Bitmap.Config.ARGB_8888;
 
         if (mode == SpritePlayer.Mode.SWIRL) {
-            int frames = (int)lottieComposition.getDurationFrames();
+            int playbackFrames = (int)lottieComposition.getDurationFrames();
             int frameRate = (int)lottieComposition.getFrameRate();
+            int interval = Math.max(Math.min(keyframeInterval, playbackFrames - 1), 1);
+            // the last frame is always kept, so the loop ends where it did
+            int frames = (playbackFrames + interval - 2) / interval + 1;
 
-            ss = new SpriteSheet(width, height, frames, frameRate);
+            ss = new SpriteSheet(width, height, frames, frameRate, config, interval, playbackFrames);
+            ss.rasterizer = ss.new Rasterizer(lottieComposition, workers);
+            return ss;
+        } else if (mode == SpritePlayer.Mode.BLINK){
+            ss = new SpriteSheet(width, height, 2, 1, config);
 
-            LottieDrawable lottieDrawable = new LottieDrawable();
-            lottieDrawable.setComposition(lottieComposition);
+            ss.addComposite(lottieComposition);
+
+            Bitmap empty = BitmapPool.obtain(width, height, config);
+            ss.addFrame(empty);
+            BitmapPool.release(empty);
+        } else if (mode == SpritePlayer.Mode.SINGLE) {
+            ss = new SpriteSheet(width, height, 1, 1, config);
+
+            ss.addComposite(lottieComposition);
+        } else {
+            return null;
+        }
+
+        ss.finish();
+        if (ss.isValid()) {
+            return ss;
+        } else {
+            ss.release();
+            return null;
+        }
+    }
 
-            Bitmap frame = Bitmap.createBitmap(lottieDrawable.getIntrinsicWidth(), lottieDrawable.getIntrinsicHeight(), Bitmap.Config.ARGB_8888);
+    // All frames drawn on top of each other. This is collected during the SWIRL pass, so BLINK
+    // and SINGLE don't need to render the composition again. Kept per composition and size, for
+    // the last few of those and up to COMPOSITES_MAX_BYTES. Only read under the lock, so evicted
+    // composites are ours alone and go back to BitmapPool.
+    private static final int COMPOSITES_MAX = 4;
+    private static final long COMPOSITES_MAX_BYTES = 4 * 1024 * 1024;
 
-            for (int i = 0; i < frames; i++) {
-                frame.eraseColor(Color.TRANSPARENT);
+    private static final class CompositeKey {
+        private final LottieComposition lottieComposition;
+        private final int width;
+        private final int height;
+        private final Bitmap.Config config;
 
-                Canvas frame_canvas = new Canvas(frame);
-                lottieDrawable.setFrame(i);
-                lottieDrawable.draw(frame_canvas);
+        private CompositeKey(LottieComposition lottieComposition, int width, int height, Bitmap.Config config) {
+            this.lottieComposition = lottieComposition;
+            this.width = width;
+            this.height = height;
+            this.config = config;
+        }
 
-                ss.addFrame(frame);
-            }
-        } else if (mode == SpritePlayer.Mode.BLINK){
-            int frames = (int)lottieComposition.getDurationFrames();
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CompositeKey)) return false;
+            CompositeKey other = (CompositeKey)o;
+            return (lottieComposition == other.lottieComposition) && (width == other.width) && (height == other.height) && (config == other.config);
+        }
+
+        @Override
+        public int hashCode() {
+            return ((System.identityHashCode(lottieComposition) * 31 + width) * 31 + height) * 31 + config.hashCode();
+        }
+    }
 
-            ss = new SpriteSheet(width, height, 2, 1);
+    private static final Map<CompositeKey, Bitmap> composites = new LinkedHashMap<>(COMPOSITES_MAX + 1, 0.75f, true);
+    private static long compositesBytes = 0;
 
-            LottieDrawable lottieDrawable = new LottieDrawable();
-            lottieDrawable.setComposition(lottieComposition);
+    private static void setComposite(LottieComposition lottieComposition, Bitmap bitmap) {
+        List<Bitmap> evicted = new ArrayList<>();
+        synchronized (composites) {
+            Bitmap previous = composites.put(new CompositeKey(lottieComposition, bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig()), bitmap);
+            compositesBytes += bitmap.getAllocationByteCount();
+            if (previous != null) {
+                compositesBytes -= previous.getAllocationByteCount();
+                evicted.add(previous);
+            }
+            // always keep the newest one
+            Iterator<Bitmap> iterator = composites.values().iterator();
+            while ((composites.size() > 1) && ((composites.size() > COMPOSITES_MAX) || (compositesBytes > COMPOSITES_MAX_BYTES))) {
+                Bitmap eldest = iterator.next();
+                iterator.remove();
+                compositesBytes -= eldest.getAllocationByteCount();
+                evicted.add(eldest);
+            }
+        }
+        for (Bitmap evictedBitmap : evicted) {
+            BitmapPool.release(evictedBitmap);
+        }
+    }
 
-            Bitmap frame = Bitmap.createBitmap(lottieDrawable.getIntrinsicWidth(), lottieDrawable.getIntrinsicHeight(), Bitmap.Config.ARGB_8888);
+    // Memory held by composites, in addition to the sheets' own getByteCount()
+    public static long getCompositesByteCount() {
+        synchronized (composites) {
+            return compositesBytes;
+        }
+    }
 
-            frame.eraseColor(Color.TRANSPARENT);
-            for (int i = 0; i < frames; i++) {
-                Canvas frame_canvas = new Canvas(frame);
-                lottieDrawable.setFrame(i);
-                lottieDrawable.draw(frame_canvas);
+    public static void clearComposites() {
+        List<Bitmap> evicted;
+        synchronized (composites) {
+            evicted = new ArrayList<>(composites.values());
+            composites.clear();
+            compositesBytes = 0;
+        }
+        for (Bitmap bitmap : evicted) {
+            BitmapPool.release(bitmap);
+        }
+    }
+
+    // Adds the composite as a frame, rendering it if we don't have it. The cached composite is
+    // copied while holding the lock, so it can't be evicted and reused underneath us.
+    private void addComposite(LottieComposition lottieComposition) {
+        RenderedFrame frame = new RenderedFrame();
+        try {
+            boolean cached;
+            synchronized (composites) {
+                Bitmap composite = composites.get(new CompositeKey(lottieComposition, width, height, config));
+                cached = (composite != null);
+                if (cached) frame.set(composite);
+            }
+            if (!cached) {
+                // SWIRL came from disk or was cancelled, render it here. Not under the lock, other
+                // players shouldn't wait for this. Two of them may render the same one, that's harmless.
+                Bitmap composite = renderComposite(lottieComposition, width, height, config);
+                frame.set(composite);
+                setComposite(lottieComposition, composite);
             }
-            ss.addFrame(frame);
+            addFrame(frame);
+        } finally {
+            frame.release();
+        }
+    }
 
-            frame.eraseColor(Color.TRANSPARENT);
-            ss.addFrame(frame);
-        } else if (mode == SpritePlayer.Mode.SINGLE) {
-            int frames = (int)lottieComposition.getDurationFrames();
+    private static Bitmap renderComposite(LottieComposition lottieComposition, int width, int height, Bitmap.Config config) {
+        int frames = (int)lottieComposition.getDurationFrames();
 
-            ss = new SpriteSheet(width, height, 1, 1);
+        LottieDrawable lottieDrawable = new LottieDrawable();
+        lottieDrawable.setComposition(lottieComposition);
 
-            LottieDrawable lottieDrawable = new LottieDrawable();
-            lottieDrawable.setComposition(lottieComposition);
+        Bitmap frame = BitmapPool.obtain(width, height, config);
 
-            Bitmap frame = Bitmap.createBitmap(lottieDrawable.getIntrinsicWidth(), lottieDrawable.getIntrinsicHeight(), Bitmap.Config.ARGB_8888);
+        Canvas frame_canvas = new Canvas(frame);
+        frame_canvas.scale((float)width / lottieDrawable.getIntrinsicWidth(), (float)height / lottieDrawable.getIntrinsicHeight());
+        for (int i = 0; i < frames; i++) {
+            lottieDrawable.setFrame(i);
+            lottieDrawable.draw(frame_canvas);
+        }
+        return frame;
+    }
+
+    // Largest keyframe interval tried automatically, and the mean alpha error (of 255, over
+    // pixels visible in either frame) an interpolated frame may have at most
+    public static final int KEYFRAME_INTERVAL_MAX = 4;
+    public static final float KEYFRAME_ERROR_MAX = 6f;
+    private static final int KEYFRAME_PROBE_SIZE = 64;
 
-            frame.eraseColor(Color.TRANSPARENT);
-            for (int i = 0; i < frames; i++) {
-                Canvas frame_canvas = new Canvas(frame);
-                lottieDrawable.setFrame(i);
-                lottieDrawable.draw(frame_canvas);
+    // Renders the composition at a small size and picks the largest interval for which blending
+    // the surrounding keyframes stays within KEYFRAME_ERROR_MAX for every frame. Expensive, use
+    // CompositionCache.getKeyframeInterval() which runs this once per composition.
+    public static int chooseKeyframeInterval(LottieComposition lottieComposition) {
+        int frames = (int)lottieComposition.getDurationFrames();
+        int size = KEYFRAME_PROBE_SIZE;
+        LottieDrawable lottieDrawable = new LottieDrawable();
+        lottieDrawable.setComposition(lottieComposition);
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.scale((float)size / lottieDrawable.getIntrinsicWidth(), (float)size / lottieDrawable.getIntrinsicHeight());
+        int[][] alpha = new int[frames][size * size];
+        for (int i = 0; i < frames; i++) {
+            bitmap.eraseColor(Color.TRANSPARENT);
+            lottieDrawable.setFrame(i);
+            lottieDrawable.draw(canvas);
+            bitmap.getPixels(alpha[i], 0, size, 0, 0, size, size);
+            for (int j = 0; j < alpha[i].length; j++) {
+                alpha[i][j] >>>= 24;
             }
-            ss.addFrame(frame);
-        } else {
-            return null;
         }
+        bitmap.recycle();
+
+        int ret = 1;
+        for (int interval = KEYFRAME_INTERVAL_MAX; interval > 1; interval--) {
+            float error = getKeyframeError(alpha, interval);
+            Slog.d(TAG, String.format(Locale.ENGLISH, "keyframe interval %d: max error %.1f", interval, error));
+            if (error <= KEYFRAME_ERROR_MAX) {
+                ret = interval;
+                break;
+            }
+        }
+        return ret;
+    }
+
+    // Worst mean error of a blended frame against the real thing
+    private static float getKeyframeError(int[][] alpha, int interval) {
+        int frames = alpha.length;
+        float ret = 0;
+        for (int frame = 0; frame < frames; frame++) {
+            int from = Math.min((frame / interval) * interval, frames - 1);
+            int to = Math.min(from + interval, frames - 1);
+            if ((from == frame) || (to == from)) continue;
+            float blend = (float)(frame - from) / (to - from);
+            long sum = 0;
+            int count = 0;
+            for (int j = 0; j < alpha[frame].length; j++) {
+                int expected = alpha[frame][j];
+                int interpolated = Math.round(alpha[from][j] * (1 - blend) + alpha[to][j] * blend);
+                if ((expected == 0) && (interpolated == 0)) continue;
+                sum += Math.abs(expected - interpolated);
+                count++;
+            }
+            if (count > 0) ret = Math.max(ret, (float)sum / count);
+        }
+        return ret;
+    }
 
+    static SpriteSheet fromBitmaps(int width, int height, int frames, int frameRate, int interval, int playbackFrames, List<Bitmap> bitmaps, int[] slots) {
+        if ((bitmaps.size() == 0) || (slots.length != frames) || (interval < 1)) return null;
+        SpriteSheet ss = new SpriteSheet(width, height, frames, frameRate, bitmaps.get(0).getConfig(), interval, playbackFrames);
+        for (Bitmap bitmap : bitmaps) {
+            ss.sheets.add(ss.new Sheet(bitmap));
+        }
+        Map<Integer, Sprite> unique = new HashMap<>();
+        for (int slot : slots) {
+            Sprite sprite = unique.get(slot);
+            if (sprite == null) {
+                int index = slot;
+                for (Sheet sheet : ss.sheets) {
+                    if (index < sheet.getCapacity()) {
+                        Rect area = sheet.getSlotArea(index);
+                        int[] pixels = new int[width * height];
+                        sheet.getBitmap().getPixels(pixels, 0, width, area.left, area.top, width, height);
+                        sprite = ss.new Sprite(sheet, area, getBounds(pixels, width, height));
+                        sheet.used = Math.max(sheet.used, index + 1);
+                        break;
+                    }
+                    index -= sheet.getCapacity();
+                }
+                if (sprite == null) break;
+                unique.put(slot, sprite);
+            }
+            ss.sprites[ss.available] = sprite;
+            ss.available++;
+        }
+        for (int i = 0; i < ss.available; i++) {
+            ss.updateDirtyBounds(i);
+        }
         if (ss.isValid()) {
             return ss;
         } else {
-            ss.recycle();
+            ss.release();
             return null;
         }
     }
 
-    private static final int SHEET_DIM = 1024;
+    // The Samsung animations are white-only, so we only need to store alpha and can tint
+    // while drawing. Uses a quarter of the memory of ARGB_8888.
+    public static final boolean ALPHA_ONLY = true;
+
+    private static final String TAG = "SpriteSheet";
+
+    private static final int SHEET_DIM_MAX = 2048;
+
+    // Leave a core for the render thread, and there's little to gain beyond 4 for ~60 frames
+    public static final int WORKERS_MAX = Math.max(Runtime.getRuntime().availableProcessors(), 1);
+    public static final int WORKERS = Math.max(Math.min(WORKERS_MAX - 1, 4), 1);
+
+    private static ThreadPoolExecutor executor = null;
+
+    private static synchronized ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            AtomicInteger count = new AtomicInteger(0);
+            executor = new ThreadPoolExecutor(WORKERS_MAX, WORKERS_MAX, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "SpriteSheet#" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+        }
+        return executor;
+    }
 
     public class Sheet {
-        private final Bitmap bitmap;
+        // only replaced by upload()
+        private volatile Bitmap bitmap;
         private final int cols;
         private final int rows;
         private final int capacity;
         private int used = 0;
 
-        private Sheet() {
-            this(null);
+        private Sheet(int count) {
+            this(createSheetBitmap(count));
         }
 
         private Sheet(Bitmap bitmap) {
-            if (bitmap == null) bitmap = Bitmap.createBitmap(SHEET_DIM, SHEET_DIM, Bitmap.Config.ARGB_8888);
             this.bitmap = bitmap;
             cols = bitmap.getWidth() / width;
             rows = bitmap.getHeight() / height;
@@ -129,54 +423,394 @@ public class SpriteSheet {
             return bitmap;
         }
 
-        public Rect nextSprite() {
-            if (used >= capacity) {
-                return null;
-            }
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public int getUsed() {
+            return used;
+        }
+
+        private Rect getSlotArea(int index) {
             Rect rect = new Rect();
-            rect.left = (used % cols) * width;
-            rect.top = (used / cols) * height;
+            rect.left = (index % cols) * width;
+            rect.top = (index / cols) * height;
             rect.right = rect.left + width;
             rect.bottom = rect.top + height;
-            used++;
             return rect;
         }
+
+        private int getSlot(Rect area) {
+            return (area.top / height) * cols + (area.left / width);
+        }
+
+        public Rect nextSprite() {
+            if (used >= capacity) {
+                return null;
+            }
+            return getSlotArea(used++);
+        }
     }
 
     public class Sprite {
         private final Sheet sheet;
         private final Rect area;
+        private final Rect bounds;
+        private AlphaRuns runs = null;
+        private Bitmap strip = null;
 
-        private Sprite(Sheet sheet, Rect area) {
+        private Sprite(Sheet sheet, Rect area, Rect bounds) {
             this.sheet = sheet;
             this.area = area;
+            this.bounds = bounds;
         }
 
         public Rect getArea() {
             return area;
         }
 
+        // Non-transparent pixels, relative to the sprite
+        public Rect getBounds() {
+            return bounds;
+        }
+
+        // Encoded sprites are expanded into a bitmap shared by the whole sheet, which is only
+        // valid until the next sprite is requested
         public Bitmap getBitmap() {
+            if (sheet == null) return expand(this);
             return sheet.getBitmap();
         }
+
+        // Whether getBitmap() expands the sprite rather than returning its atlas. Sprites are
+        // replaced when the sheet is encoded, but a frame may still be drawing the old ones.
+        public boolean isEncoded() {
+            return sheet == null;
+        }
+
+        public boolean isAlphaOnly() {
+            return SpriteSheet.this.isAlphaOnly();
+        }
+    }
+
+    // A frame scaled to sprite size, with the pixels and hash needed for deduplication
+    private class RenderedFrame {
+        private final Bitmap bitmap;
+        private final Canvas canvas;
+        private final Paint paint = new Paint();
+        private final int[] pixels;
+        private int hash = 0;
+        private int index = -1;
+
+        private RenderedFrame() {
+            bitmap = BitmapPool.obtain(width, height, config);
+            canvas = new Canvas(bitmap);
+            pixels = new int[width * height];
+            paint.setFilterBitmap(true);
+            paint.setDither(true);
+            paint.setAntiAlias(true);
+        }
+
+        private void set(Bitmap source) {
+            bitmap.eraseColor(Color.TRANSPARENT);
+            canvas.drawBitmap(source, new Rect(0, 0, source.getWidth(), source.getHeight()), new Rect(0, 0, width, height), paint);
+            update();
+        }
+
+        // Renders the vectors at sprite size, rather than resampling an intrinsic size frame
+        private void render(LottieDrawable lottieDrawable, int index) {
+            bitmap.eraseColor(Color.TRANSPARENT);
+            canvas.save();
+            canvas.scale((float)width / lottieDrawable.getIntrinsicWidth(), (float)height / lottieDrawable.getIntrinsicHeight());
+            lottieDrawable.setFrame(index);
+            lottieDrawable.draw(canvas);
+            canvas.restore();
+            update();
+        }
+
+        private void update() {
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            hash = Arrays.hashCode(pixels);
+        }
+
+        private void release() {
+            BitmapPool.release(bitmap);
+        }
+    }
+
+    // One per worker, LottieDrawable isn't safe to use from multiple threads. Also accumulates
+    // the frames it renders for the BLINK/SINGLE composite; SRC_OVER is order-independent for
+    // our white-only content, so the workers' composites can be merged in any order.
+    private class Renderer {
+        private final LottieDrawable lottieDrawable;
+        private Bitmap composite;
+        private final Canvas compositeCanvas;
+
+        private Renderer(LottieComposition lottieComposition) {
+            lottieDrawable = new LottieDrawable();
+            lottieDrawable.setComposition(lottieComposition);
+            composite = BitmapPool.obtain(width, height, config);
+            compositeCanvas = new Canvas(composite);
+        }
+
+        private void render(int index, RenderedFrame target) {
+            target.render(lottieDrawable, index);
+            compositeCanvas.drawBitmap(target.bitmap, 0, 0, null);
+        }
+
+        private void release() {
+            if (composite != null) {
+                BitmapPool.release(composite);
+                composite = null;
+            }
+        }
+    }
+
+    // Renders frames ahead of the commit point on the shared pool. Jobs never block, so sheets
+    // building at the same time can't starve each other. Each buffer is reused only after the
+    // frame in it has been committed, and frames are committed strictly in order, so slot
+    // assignment and deduplication are identical to rendering sequentially.
+    private class Rasterizer {
+        private final LottieComposition lottieComposition;
+        private final int workers;
+        private final RenderedFrame[] buffers;
+        private final List<Renderer> renderers = new ArrayList<>();
+        private final List<Renderer> idle = new ArrayList<>();
+        private int submitted = 0;
+        private int running = 0;
+        private boolean released = false;
+        private boolean freed = false;
+
+        private Rasterizer(LottieComposition lottieComposition, int workers) {
+            this.lottieComposition = lottieComposition;
+            this.workers = Math.max(Math.min(workers, WORKERS_MAX), 1);
+            buffers = new RenderedFrame[this.workers * 2];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = new RenderedFrame();
+            }
+        }
+
+        // Called with the index of the next frame to commit, returns null when released
+        private synchronized RenderedFrame await(int index) {
+            while (!released) {
+                while ((running < workers) && (submitted < frames) && (submitted < index + buffers.length)) {
+                    int submit = submitted++;
+                    running++;
+                    getExecutor().execute(() -> render(submit));
+                }
+                RenderedFrame buffer = buffers[index % buffers.length];
+                if (buffer.index == index) return buffer;
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            return null;
+        }
+
+        private void render(int index) {
+            Renderer renderer;
+            RenderedFrame buffer = buffers[index % buffers.length];
+            synchronized (this) {
+                if (released) {
+                    running--;
+                    releaseIfIdle();
+                    return;
+                }
+                if (idle.size() > 0) {
+                    renderer = idle.remove(idle.size() - 1);
+                } else {
+                    renderer = new Renderer(lottieComposition);
+                    renderers.add(renderer);
+                }
+            }
+            renderer.render(getSourceFrame(index), buffer);
+            synchronized (this) {
+                buffer.index = index;
+                idle.add(renderer);
+                running--;
+                releaseIfIdle();
+                notifyAll();
+            }
+        }
+
+        // All frames have been committed, so all renderers are idle
+        private synchronized void complete() {
+            Bitmap merged = null;
+            for (Renderer renderer : renderers) {
+                if (merged == null) {
+                    merged = renderer.composite;
+                    renderer.composite = null;
+                } else {
+                    new Canvas(merged).drawBitmap(renderer.composite, 0, 0, null);
+                }
+            }
+            if ((merged != null) && (interval > 1)) {
+                // missing the in-between frames
+                BitmapPool.release(merged);
+            } else if (merged != null) {
+                setComposite(lottieComposition, merged);
+            }
+            release();
+        }
+
+        private synchronized void release() {
+            if (released) return;
+            released = true;
+            releaseIfIdle();
+            notifyAll();
+        }
+
+        private void releaseIfIdle() {
+            if (!released || (running > 0) || freed) return;
+            freed = true;
+            for (Renderer renderer : renderers) {
+                renderer.release();
+            }
+            for (RenderedFrame buffer : buffers) {
+                buffer.release();
+            }
+        }
     }
 
     private List<Sheet> sheets = new ArrayList<>();
-    private List<Sprite> sprites = new ArrayList<>();
+    // replaced as a whole when the sheet changes storage, see replaceSprites()
+    private volatile Sprite[] sprites;
+    private final Rect[] dirtyBounds;
+    private volatile int available = 0;
+    private volatile boolean recycled = false;
+    private final AtomicInteger references = new AtomicInteger(1);
+    private final AtomicInteger readers = new AtomicInteger(0);
+    private volatile boolean uploaded = false;
+    private volatile boolean encoded = false;
+    private Bitmap scratch = null;
+    private byte[] scratchPixels = null;
+    private ByteBuffer scratchBuffer = null;
+    private Canvas scratchCanvas = null;
+    private PolarStrip polarStrip = null;
+    private Sprite expanded = null;
+    private long encodedBytes = 0;
+    private Rasterizer rasterizer = null;
+    private OnSpriteSheetCompleteListener onSpriteSheetCompleteListener = null;
+
+    // only used while building
+    private int[] comparePixels = null;
+    private Map<Integer, List<Sprite>> hashes = null;
 
     private final int width;
     private final int height;
     private final int frames;
     private final int frameRate;
+    private final Bitmap.Config config;
+    private final int interval;
+    private final int playbackFrames;
+
+    private SpriteSheet(int width, int height, int frames, int frameRate, Bitmap.Config config) {
+        this(width, height, frames, frameRate, config, 1, frames);
+    }
 
-    private SpriteSheet(int width, int height, int frames, int frameRate) {
+    private SpriteSheet(int width, int height, int frames, int frameRate, Bitmap.Config config, int interval, int playbackFrames) {
         this.width = width;
         this.height = height;
         this.frames = frames;
         this.frameRate = frameRate;
+        this.config = config;
+        this.interval = interval;
+        this.playbackFrames = playbackFrames;
+        this.sprites = new Sprite[frames];
+        this.dirtyBounds = new Rect[frames];
+        LeakTracker.track(this, String.format(Locale.ENGLISH, "SpriteSheet %dx%d %d frames", width, height, frames));
+    }
+
+    private static Rect getBounds(int[] pixels, int width, int height) {
+        int left = width;
+        int top = height;
+        int right = 0;
+        int bottom = 0;
+        for (int y = 0; y < height; y++) {
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                if ((pixels[offset + x] >>> 24) != 0) {
+                    if (x < left) left = x;
+                    if (x >= right) right = x + 1;
+                    if (y < top) top = y;
+                    bottom = y + 1;
+                }
+            }
+        }
+        if ((right <= left) || (bottom <= top)) return new Rect();
+        return new Rect(left, top, right, bottom);
+    }
+
+    // Union of the frame's bounds with those of the frame before it, frame 0 follows the last
+    // frame. Only known once both frames are available.
+    private void updateDirtyBounds(int index) {
+        int previous = (index == 0 ? frames : index) - 1;
+        if ((index >= available) || (previous >= available)) return;
+        Sprite[] sprites = this.sprites;
+        Rect rect = new Rect(sprites[index].bounds);
+        rect.union(sprites[previous].bounds);
+        dirtyBounds[index] = rect;
+    }
+
+    private Bitmap createSheetBitmap(int count) {
+        // smallest grid that holds count sprites (or as many as fit), prefer square-ish on ties
+        int maxCols = Math.max(SHEET_DIM_MAX / width, 1);
+        int maxRows = Math.max(SHEET_DIM_MAX / height, 1);
+        count = Math.max(Math.min(count, maxCols * maxRows), 1);
+
+        int bestCols = 1;
+        int bestRows = count;
+        long bestArea = Long.MAX_VALUE;
+        int bestMaxDim = Integer.MAX_VALUE;
+        for (int cols = 1; cols <= Math.min(count, maxCols); cols++) {
+            int rows = (count + cols - 1) / cols;
+            if (rows > maxRows) continue;
+            long area = (long)cols * width * rows * height;
+            int maxDim = Math.max(cols * width, rows * height);
+            if ((area < bestArea) || ((area == bestArea) && (maxDim < bestMaxDim))) {
+                bestCols = cols;
+                bestRows = rows;
+                bestArea = area;
+                bestMaxDim = maxDim;
+            }
+        }
+        return BitmapPool.obtain(bestCols * width, bestRows * height, config);
     }
 
     private Sprite addFrame(Bitmap source) {
+        RenderedFrame frame = new RenderedFrame();
+        try {
+            frame.set(source);
+            return addFrame(frame);
+        } finally {
+            frame.release();
+        }
+    }
+
+    private Sprite addFrame(RenderedFrame frame) {
+        if (hashes == null) {
+            comparePixels = new int[width * height];
+            hashes = new HashMap<>();
+        }
+
+        // many frames are identical (stroke width 0 at the end of the timeline), share those
+        List<Sprite> candidates = hashes.get(frame.hash);
+        if (candidates != null) {
+            for (Sprite candidate : candidates) {
+                Rect area = candidate.getArea();
+                candidate.getBitmap().getPixels(comparePixels, 0, width, area.left, area.top, width, height);
+                if (Arrays.equals(frame.pixels, comparePixels)) {
+                    publish(candidate);
+                    return candidate;
+                }
+            }
+        } else {
+            candidates = new ArrayList<>();
+            hashes.put(frame.hash, candidates);
+        }
+
         Sheet sheet = null;
         Rect area = null;
         if (sheets.size() > 0) {
@@ -184,23 +818,137 @@ public class SpriteSheet {
             area = sheet.nextSprite();
         }
         if (area == null) {
-            sheet = new Sheet();
+            sheet = new Sheet(frames - available);
             sheets.add(sheet);
             area = sheet.nextSprite();
         }
 
         Canvas canvas = new Canvas(sheet.getBitmap());
-        Paint paint = new Paint();
-        paint.setFilterBitmap(true);
-        paint.setDither(true);
-        paint.setAntiAlias(true);
-        canvas.drawBitmap(source, new Rect(0, 0, source.getWidth(), source.getHeight()), area, paint);
+        canvas.drawBitmap(frame.bitmap, area.left, area.top, null);
 
-        Sprite sprite = new Sprite(sheet, area);
-        sprites.add(sprite);
+        Sprite sprite = new Sprite(sheet, area, getBounds(frame.pixels, width, height));
+        candidates.add(sprite);
+        publish(sprite);
         return sprite;
     }
 
+    // available is what the render thread goes by, it may only be raised after the sprite has
+    // been stored (the volatile write publishes it)
+    private void publish(Sprite sprite) {
+        int index = available;
+        sprites[index] = sprite;
+        available = index + 1;
+        updateDirtyBounds(index);
+    }
+
+    // Swaps in a new sprite table with each sprite in replaced substituted, and returns once no
+    // frame that may still see the old ones is being drawn. Only then can their storage go.
+    private void replaceSprites(Map<Sprite, Sprite> replaced) {
+        Sprite[] sprites = this.sprites.clone();
+        for (int i = 0; i < available; i++) {
+            Sprite sprite = replaced.get(sprites[i]);
+            if (sprite != null) sprites[i] = sprite;
+        }
+        this.sprites = sprites;
+        for (int i = 0; i < available; i++) {
+            updateDirtyBounds(i);
+        }
+        awaitReaders();
+    }
+
+    // Frames take a few milliseconds at most, and we're on the loader thread
+    private void awaitReaders() {
+        while (readers.get() > 0) {
+            SystemClock.sleep(1);
+        }
+    }
+
+    // Rasterizes and publishes the next frame, returns false when there's nothing more to do
+    public boolean buildNextFrame() {
+        Rasterizer rasterizer;
+        int index;
+        synchronized (this) {
+            rasterizer = this.rasterizer;
+            index = available;
+            if (rasterizer == null) return false;
+            if (recycled || (index >= frames)) {
+                this.rasterizer = null;
+                rasterizer.release();
+                return false;
+            }
+        }
+
+        // Lottie is the expensive part, keep it outside the lock so we don't block drawing
+        RenderedFrame frame = rasterizer.await(index);
+
+        OnSpriteSheetCompleteListener listener = null;
+        synchronized (this) {
+            if (recycled || (frame == null)) {
+                this.rasterizer = null;
+                rasterizer.release();
+                return false;
+            }
+            addFrame(frame);
+            if (available == frames) {
+                this.rasterizer = null;
+                rasterizer.complete();
+                finish();
+                listener = onSpriteSheetCompleteListener;
+            }
+        }
+        if (listener != null) {
+            listener.onSpriteSheetComplete(this);
+        }
+        return true;
+    }
+
+    public void setOnSpriteSheetCompleteListener(OnSpriteSheetCompleteListener onSpriteSheetCompleteListener) {
+        boolean complete;
+        synchronized (this) {
+            this.onSpriteSheetCompleteListener = onSpriteSheetCompleteListener;
+            complete = isValid();
+        }
+        if (complete && (onSpriteSheetCompleteListener != null)) {
+            onSpriteSheetCompleteListener.onSpriteSheetComplete(this);
+        }
+    }
+
+    private void finish() {
+        comparePixels = null;
+        hashes = null;
+        updateDirtyBounds(0);
+        compact();
+        Slog.d(TAG, getStatistics());
+        Slog.d(TAG, BitmapPool.getStatistics());
+        Slog.d(TAG, String.format(Locale.ENGLISH, "composites: %d bytes", getCompositesByteCount()));
+    }
+
+    private void compact() {
+        // the last sheet was sized for the frames remaining at the time, shrink it if we
+        // ended up with fewer unique sprites
+        if (sheets.size() == 0) return;
+        Sheet last = sheets.get(sheets.size() - 1);
+        if (last.getUsed() >= last.getCapacity()) return;
+        Bitmap bitmap = createSheetBitmap(last.getUsed());
+        if ((long)bitmap.getWidth() * bitmap.getHeight() >= (long)last.getBitmap().getWidth() * last.getBitmap().getHeight()) {
+            BitmapPool.release(bitmap);
+            return;
+        }
+        Sheet compact = new Sheet(bitmap);
+        Canvas canvas = new Canvas(bitmap);
+        Map<Sprite, Sprite> replaced = new IdentityHashMap<>();
+        for (int i = 0; i < available; i++) {
+            Sprite sprite = sprites[i];
+            if ((sprite.sheet != last) || replaced.containsKey(sprite)) continue;
+            Rect area = compact.nextSprite();
+            canvas.drawBitmap(last.getBitmap(), sprite.area, area, null);
+            replaced.put(sprite, new Sprite(compact, area, sprite.bounds));
+        }
+        sheets.set(sheets.size() - 1, compact);
+        replaceSprites(replaced);
+        BitmapPool.release(last.getBitmap());
+    }
+
     public int getWidth() {
         return width;
     }
@@ -217,29 +965,355 @@ public class SpriteSheet {
         return frameRate;
     }
 
+    // Frames stored are every interval-th frame of the composition, plus the last one
+    public int getKeyframeInterval() {
+        return interval;
+    }
+
+    // Length of the animation in frames at getFrameRate(), getFrames() unless keyframes are used
+    public int getPlaybackFrames() {
+        return playbackFrames;
+    }
+
+    // Stored frame at or before a playback frame
+    public int getKeyframe(int playbackFrame) {
+        return Math.max(Math.min(playbackFrame / interval, frames - 1), 0);
+    }
+
+    // Playback frame a stored frame was rendered from
+    public int getSourceFrame(int keyframe) {
+        return Math.min(keyframe * interval, playbackFrames - 1);
+    }
+
+    // Weight of the stored frame after getKeyframe() for a playback frame in between the two,
+    // 0 on keyframes. In-between frames are drawn by blending both.
+    public float getKeyframeBlend(int playbackFrame) {
+        int keyframe = getKeyframe(playbackFrame);
+        if (keyframe >= frames - 1) return 0f;
+        int from = getSourceFrame(keyframe);
+        int to = getSourceFrame(keyframe + 1);
+        return Math.max(Math.min((float)(playbackFrame - from) / (to - from), 1f), 0f);
+    }
+
+    public boolean isAlphaOnly() {
+        return (config == Bitmap.Config.ALPHA_8) && !uploaded;
+    }
+
+    public long getByteCount() {
+        if (recycled) return 0;
+        long ret = 0;
+        if (encoded) {
+            ret += encodedBytes + scratch.getAllocationByteCount();
+        }
+        for (Sheet sheet : sheets) {
+            Bitmap bitmap = sheet.getBitmap();
+            if ((bitmap != null) && !bitmap.isRecycled()) {
+                ret += bitmap.getAllocationByteCount();
+            }
+        }
+        return ret;
+    }
+
+    public String getStatistics() {
+        StringBuilder sb = new StringBuilder();
+        long total = 0;
+        long wasted = 0;
+        for (int i = 0; i < sheets.size(); i++) {
+            Sheet sheet = sheets.get(i);
+            Bitmap bitmap = sheet.getBitmap();
+            if ((bitmap == null) || bitmap.isRecycled()) continue;
+            long bytes = bitmap.getAllocationByteCount();
+            long used = (long)sheet.getUsed() * width * height * bitmap.getRowBytes() / bitmap.getWidth();
+            total += bytes;
+            wasted += bytes - used;
+            sb.append(String.format(Locale.ENGLISH, " [%d: %dx%d %d/%d sprites, %d bytes, %.1f%% waste]",
+                    i, bitmap.getWidth(), bitmap.getHeight(), sheet.getUsed(), sheet.getCapacity(), bytes, 100f * (bytes - used) / bytes));
+        }
+        int unique = 0;
+        for (Sheet sheet : sheets) {
+            unique += sheet.getUsed();
+        }
+        return String.format(Locale.ENGLISH, "%dx%d %d frames, %d unique, %d bytes, %d wasted", width, height, frames, unique, total, wasted) + sb.toString();
+    }
+
     public Sprite getFrame(int index) {
-        if (index < sprites.size()) {
-            return sprites.get(index);
+        if ((index >= 0) && (index < available)) {
+            return sprites[index];
+        }
+        return null;
+    }
+
+    // Drawing brackets each frame with these rather than holding the monitor, so it never waits
+    // for the loader. Storage changes keep the old bitmaps until no frame is between the two.
+    // Also holds a reference, false if the sheet is already gone.
+    public boolean beginDraw() {
+        if (!acquire()) return false;
+        readers.incrementAndGet();
+        return true;
+    }
+
+    public void endDraw() {
+        readers.decrementAndGet();
+        release();
+    }
+
+    public Rect getDirtyBounds(int index) {
+        if ((index >= 0) && (index < frames)) {
+            return dirtyBounds[index];
         }
         return null;
     }
 
+    public int getAvailableFrames() {
+        return available;
+    }
+
+    int[] getSlots() {
+        int[] ret = new int[available];
+        for (int i = 0; i < ret.length; i++) {
+            Sprite sprite = sprites[i];
+            int offset = 0;
+            for (Sheet sheet : sheets) {
+                if (sheet == sprite.sheet) {
+                    ret[i] = offset + sheet.getSlot(sprite.area);
+                    break;
+                }
+                offset += sheet.getCapacity();
+            }
+        }
+        return ret;
+    }
+
+    List<Bitmap> getBitmaps() {
+        List<Bitmap> ret = new ArrayList<>();
+        for (Sheet sheet : sheets) {
+            ret.add(sheet.getBitmap());
+        }
+        return ret;
+    }
+
     public boolean isValid() {
-        return (sprites.size() == frames);
+        return !recycled && (available == frames);
+    }
+
+    public boolean isRecycled() {
+        return recycled;
+    }
+
+    public boolean isUploaded() {
+        return uploaded;
+    }
+
+    public boolean isEncoded() {
+        return encoded;
     }
 
-    public void recycle() {
+    // Replaces the atlases with run-length encoded alpha, typically a tenth of the memory. Each
+    // drawn sprite is expanded into a single sprite-sized bitmap, so like upload() this should be
+    // the last thing done with a sheet, and only the render thread may draw from it afterwards.
+    public synchronized boolean encode() {
+        if (encoded) return true;
+        if (!isValid() || uploaded || (config != Bitmap.Config.ALPHA_8)) return false;
+
+        long before = getByteCount();
+        Map<Sprite, AlphaRuns> runs = new IdentityHashMap<>();
+        for (int i = 0; i < available; i++) {
+            Sprite sprite = sprites[i];
+            if (!runs.containsKey(sprite)) {
+                runs.put(sprite, new AlphaRuns(sprite.getBitmap(), sprite.area, sprite.bounds));
+            }
+        }
+        // the render thread may hold on to the old sprites, so those are replaced rather than changed
+        Map<Sprite, Sprite> replaced = new IdentityHashMap<>();
+        for (Map.Entry<Sprite, AlphaRuns> entry : runs.entrySet()) {
+            Sprite sprite = new Sprite(null, new Rect(0, 0, width, height), new Rect(entry.getKey().bounds));
+            sprite.runs = entry.getValue();
+            encodedBytes += sprite.runs.getByteCount();
+            replaced.put(entry.getKey(), sprite);
+        }
+        // ready before the new sprites can be drawn
+        scratch = BitmapPool.obtain(width, height, Bitmap.Config.ALPHA_8);
+        scratchPixels = new byte[scratch.getRowBytes() * height];
+        scratchBuffer = ByteBuffer.wrap(scratchPixels);
+        expanded = null;
+        encoded = true;
+        replaceSprites(replaced);
         for (Sheet sheet : sheets) {
-            Bitmap bitmap = sheet.getBitmap();
-            if ((bitmap != null) && !bitmap.isRecycled()) {
-                bitmap.recycle();
+            BitmapPool.release(sheet.getBitmap());
+        }
+        sheets.clear();
+        Slog.d(TAG, String.format(Locale.ENGLISH, "encode %dx%d %d sprites: %d -> %d bytes", width, height, runs.size(), before, getByteCount()));
+        return true;
+    }
+
+    // Like encode(), but stores each sprite as a strip sampled along the ring drawn by the
+    // composition, see PolarStrip. Only works for compositions RingRenderer understands.
+    public synchronized boolean encodePolar(RingRenderer geometry) {
+        if (encoded) return true;
+        if (!isValid() || uploaded || (config != Bitmap.Config.ALPHA_8)) return false;
+
+        Path centerline = new Path();
+        if (!geometry.getCenterline(width, height, centerline)) return false;
+        PolarStrip polarStrip = PolarStrip.create(centerline, geometry.getMaxStrokeWidth(width, height));
+        if (polarStrip == null) return false;
+
+        long before = getByteCount();
+        Map<Sprite, Bitmap> strips = new IdentityHashMap<>();
+        for (int i = 0; i < available; i++) {
+            Sprite sprite = sprites[i];
+            if (!strips.containsKey(sprite)) {
+                strips.put(sprite, sprite.bounds.isEmpty() ? null : polarStrip.encode(sprite.getBitmap(), sprite.area));
+            }
+        }
+        // the render thread may hold on to the old sprites, so those are replaced rather than changed
+        Map<Sprite, Sprite> replaced = new IdentityHashMap<>();
+        for (Map.Entry<Sprite, Bitmap> entry : strips.entrySet()) {
+            Bitmap strip = entry.getValue();
+            Rect bounds = new Rect(entry.getKey().bounds);
+            if (strip != null) {
+                encodedBytes += strip.getAllocationByteCount();
+                // resampling spreads the edges a little
+                bounds.inset(-2, -2);
+                //noinspection CheckResult
+                bounds.intersect(0, 0, width, height);
+            }
+            Sprite sprite = new Sprite(null, new Rect(0, 0, width, height), bounds);
+            sprite.strip = strip;
+            replaced.put(entry.getKey(), sprite);
+        }
+        encodedBytes += polarStrip.getByteCount();
+        // ready before the new sprites can be drawn
+        scratch = BitmapPool.obtain(width, height, Bitmap.Config.ALPHA_8);
+        scratchCanvas = new Canvas(scratch);
+        this.polarStrip = polarStrip;
+        expanded = null;
+        encoded = true;
+        replaceSprites(replaced);
+        for (Sheet sheet : sheets) {
+            BitmapPool.release(sheet.getBitmap());
+        }
+        sheets.clear();
+        Slog.d(TAG, String.format(Locale.ENGLISH, "encodePolar %dx%d %d sprites: %d -> %d bytes", width, height, strips.size(), before, getByteCount()));
+        return true;
+    }
+
+    private Bitmap expand(Sprite sprite) {
+        if (sprite == expanded) return scratch;
+        if (polarStrip != null) {
+            scratch.eraseColor(Color.TRANSPARENT);
+            if (sprite.strip != null) {
+                polarStrip.draw(scratchCanvas, sprite.strip);
+            }
+        } else {
+            int stride = scratch.getRowBytes();
+            if (expanded != null) {
+                Rect bounds = expanded.bounds;
+                for (int y = bounds.top; y < bounds.bottom; y++) {
+                    Arrays.fill(scratchPixels, y * stride + bounds.left, y * stride + bounds.right, (byte)0);
+                }
+            }
+            sprite.runs.expand(scratchPixels, stride);
+            scratchBuffer.rewind();
+            scratch.copyPixelsFromBuffer(scratchBuffer);
+        }
+        expanded = sprite;
+        return scratch;
+    }
+
+    // Moves the atlases to GPU memory as HARDWARE bitmaps and frees the CPU copies. Those can only
+    // be drawn on a hardware accelerated canvas, and their pixels can't be read anymore, so this
+    // should be the last thing done with a sheet (after saving it to disk).
+    public synchronized boolean upload() {
+        if (uploaded) return true;
+        if (!isValid() || encoded) return false;
+
+        List<Bitmap> uploads = new ArrayList<>();
+        Paint paint = new Paint();
+        paint.setColor(Color.WHITE);
+        for (Sheet sheet : sheets) {
+            Bitmap source = sheet.getBitmap();
+            Bitmap argb = source;
+            if (source.getConfig() == Bitmap.Config.ALPHA_8) {
+                // alpha-only hardware bitmaps aren't supported on all devices, expand to white
+                argb = BitmapPool.obtain(source.getWidth(), source.getHeight(), Bitmap.Config.ARGB_8888);
+                new Canvas(argb).drawBitmap(source, 0, 0, paint);
+            }
+            Bitmap hardware = argb.copy(Bitmap.Config.HARDWARE, false);
+            if (argb != source) {
+                BitmapPool.release(argb);
+            }
+            if (hardware == null) {
+                for (Bitmap bitmap : uploads) {
+                    bitmap.recycle();
+                }
+                return false;
+            }
+            uploads.add(hardware);
+        }
+        List<Bitmap> olds = new ArrayList<>();
+        for (int i = 0; i < sheets.size(); i++) {
+            Sheet sheet = sheets.get(i);
+            olds.add(sheet.bitmap);
+            sheet.bitmap = uploads.get(i);
+        }
+        uploaded = true;
+        awaitReaders();
+        for (Bitmap old : olds) {
+            // recycle rather than pool, the point is to free the memory
+            old.recycle();
+        }
+        Slog.d(TAG, String.format(Locale.ENGLISH, "upload %dx%d %d sheets", width, height, sheets.size()));
+        return true;
+    }
+
+    // The creator holds the first reference. Anything that uses the bitmaps outside of the
+    // owner's control (drawing, saving) takes its own, and fails if the sheet is already gone.
+    public boolean acquire() {
+        while (true) {
+            int count = references.get();
+            if (count == 0) return false;
+            if (references.compareAndSet(count, count + 1)) return true;
+        }
+    }
+
+    // The bitmaps go back to the pool when the last reference is released, so they must not be
+    // used after this. A sheet that is still streaming stops building.
+    public void release() {
+        while (true) {
+            int count = references.get();
+            if (count == 0) return;
+            if (references.compareAndSet(count, count - 1)) {
+                if (count > 1) return;
+                break;
+            }
+        }
+        synchronized (this) {
+            recycle();
+        }
+    }
+
+    private void recycle() {
+        recycled = true;
+        if (rasterizer != null) {
+            // wakes up buildNextFrame, which clears it
+            rasterizer.release();
+        }
+        for (Sheet sheet : sheets) {
+            BitmapPool.release(sheet.getBitmap());
+        }
+        BitmapPool.release(scratch);
+        for (int i = 0; i < available; i++) {
+            Bitmap strip = sprites[i].strip;
+            if (strip != null) {
+                // shared sprites show up more than once
+                sprites[i].strip = null;
+                BitmapPool.release(strip);
             }
         }
+        LeakTracker.untrack(this);
     }
 
-    @Override
-    protected void finalize() throws Throwable {
-        recycle();
-        super.finalize();
+    public int getReferences() {
+        return references.get();
     }
 }
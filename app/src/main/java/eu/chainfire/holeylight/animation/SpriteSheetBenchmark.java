@@ -0,0 +1,512 @@
+/*
+ * Copyright (C) 2019 Jorrit "Chainfire" Jongma
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package eu.chainfire.holeylight.animation;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+import android.graphics.PixelFormat;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.view.Surface;
+
+import com.airbnb.lottie.LottieComposition;
+import com.airbnb.lottie.LottieCompositionFactory;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import eu.chainfire.holeylight.misc.Slog;
+
+/*
+ * Debug-only benchmarks, enable through NotificationAnimation.BENCHMARK and check logcat.
+ * Runs on the loader thread with the real sprite size.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" })
+public class SpriteSheetBenchmark {
+    private static final String TAG = "Benchmark";
+
+    private static final int LOOPS = 20;
+    private static final int[] COLORS_SINGLE = new int[] { Color.GREEN };
+    private static final int[] COLORS_MULTI = new int[] { Color.WHITE, Color.GREEN, Color.RED };
+    private static final String[] NAMES = new String[] { "beyond0", "beyond1", "beyond2" };
+    private static final String[] JSONS = new String[] { NotificationAnimation.jsonBeyond0, NotificationAnimation.jsonBeyond1, NotificationAnimation.jsonBeyond2 };
+
+    private static long nanos() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    public static void run(LottieComposition lottieComposition, int width, int height) {
+        alphaOnly(lottieComposition, width, height);
+        workers();
+        hardware();
+        ring();
+        encoded();
+        keyframes();
+        pictures();
+    }
+
+    private static LottieComposition getComposition(int index) {
+        return LottieCompositionFactory.fromJsonStringSync(JSONS[index], null).getValue();
+    }
+
+    // SWIRL build time by worker count for the stock compositions, at their native size
+    public static void workers() {
+        for (int i = 0; i < JSONS.length; i++) {
+            LottieComposition lottieComposition = getComposition(i);
+            if (lottieComposition == null) continue;
+            int width = lottieComposition.getBounds().width();
+            int height = lottieComposition.getBounds().height();
+
+            // warm up
+            SpriteSheet warmup = SpriteSheet.fromLottieComposition(lottieComposition, width, height, SpritePlayer.Mode.SWIRL, SpriteSheet.ALPHA_ONLY, SpriteSheet.WORKERS);
+            if (warmup != null) warmup.release();
+
+            SpriteSheet reference = null;
+            try {
+                for (int workers = 1; workers <= SpriteSheet.WORKERS_MAX; workers++) {
+                    long start = nanos();
+                    SpriteSheet spriteSheet = SpriteSheet.fromLottieComposition(lottieComposition, width, height, SpritePlayer.Mode.SWIRL, SpriteSheet.ALPHA_ONLY, workers);
+                    long build = nanos() - start;
+                    if (spriteSheet == null) break;
+
+                    boolean identical = (reference == null) || identical(reference, spriteSheet);
+                    Slog.d(TAG, String.format(Locale.ENGLISH, "%s %dx%d workers:%d build:%.1fms identical:%s",
+                            NAMES[i], width, height, workers, build / 1000000f, identical ? "yes" : "NO"));
+
+                    if (reference == null) {
+                        reference = spriteSheet;
+                    } else {
+                        spriteSheet.release();
+                    }
+                }
+            } finally {
+                if (reference != null) reference.release();
+            }
+        }
+    }
+
+    // ARGB_8888 + color filter vs ALPHA_8 + paint color
+    public static void alphaOnly(LottieComposition lottieComposition, int width, int height) {
+        SpriteSheet[] sheets = new SpriteSheet[2];
+        Bitmap[] targets = new Bitmap[2];
+        try {
+            for (int i = 0; i < 2; i++) {
+                boolean alphaOnly = (i == 1);
+
+                long start = nanos();
+                sheets[i] = SpriteSheet.fromLottieComposition(lottieComposition, width, height, SpritePlayer.Mode.SWIRL, alphaOnly);
+                long build = nanos() - start;
+                if (sheets[i] == null) return;
+
+                targets[i] = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                Canvas canvas = new Canvas(targets[i]);
+
+                float single = drawLoop(canvas, sheets[i], COLORS_SINGLE, false);
+                float multi = drawLoop(canvas, sheets[i], COLORS_MULTI, false);
+                float background = drawLoop(canvas, sheets[i], COLORS_MULTI, true);
+
+                Slog.d(TAG, String.format(Locale.ENGLISH, "%s %dx%d build:%.1fms bytes:%d single:%.1fus multi:%.1fus background:%.1fus",
+                        alphaOnly ? "ALPHA_8" : "ARGB_8888", width, height, build / 1000000f, sheets[i].getByteCount(), single, multi, background));
+            }
+
+            int maxDiff = 0;
+            for (int[] colors : new int[][] { COLORS_SINGLE, COLORS_MULTI }) {
+                for (boolean background : new boolean[] { false, true }) {
+                    for (int frame = 0; frame < sheets[0].getFrames(); frame++) {
+                        for (int i = 0; i < 2; i++) {
+                            drawFrame(new Canvas(targets[i]), sheets[i].getFrame(frame), colors, background);
+                        }
+                        maxDiff = Math.max(maxDiff, maxDifference(targets[0], targets[1]));
+                    }
+                }
+            }
+            Slog.d(TAG, String.format(Locale.ENGLISH, "ALPHA_8 vs ARGB_8888 max channel difference: %d", maxDiff));
+        } finally {
+            for (int i = 0; i < 2; i++) {
+                if (sheets[i] != null) sheets[i].release();
+                if (targets[i] != null) targets[i].recycle();
+            }
+        }
+    }
+
+    private static float drawLoop(Canvas canvas, SpriteSheet spriteSheet, int[] colors, boolean background) {
+        long start = nanos();
+        for (int loop = 0; loop < LOOPS; loop++) {
+            for (int frame = 0; frame < spriteSheet.getFrames(); frame++) {
+                drawFrame(canvas, spriteSheet.getFrame(frame), colors, background);
+            }
+        }
+        return (nanos() - start) / (LOOPS * spriteSheet.getFrames() * 1000f);
+    }
+
+    // mirrors SpritePlayer::renderFrame
+    private static void drawFrame(Canvas canvas, SpriteSheet.Sprite sprite, int[] colors, boolean background) {
+        Rect dest = new Rect(0, 0, canvas.getWidth(), canvas.getHeight());
+        Paint paint = new Paint();
+        if (background) {
+            canvas.drawColor(Color.BLACK, PorterDuff.Mode.SRC);
+        } else {
+            canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        }
+        paint.setColor(Color.WHITE);
+        if (colors.length == 1) {
+            if (sprite.isAlphaOnly()) {
+                paint.setColor(SpritePlayer.getTintColor(colors[0]));
+            } else {
+                paint.setColorFilter(new PorterDuffColorFilter(colors[0], PorterDuff.Mode.SRC_ATOP));
+            }
+            canvas.drawBitmap(sprite.getBitmap(), sprite.getArea(), dest, paint);
+        } else {
+            canvas.drawBitmap(sprite.getBitmap(), sprite.getArea(), dest, paint);
+            paint.setXfermode(new PorterDuffXfermode(background ? PorterDuff.Mode.MULTIPLY : PorterDuff.Mode.SRC_ATOP));
+            float anglePerColor = 360f / colors.length;
+            for (int i = 0; i < colors.length; i++) {
+                paint.setColor(colors[i]);
+                canvas.drawArc(dest.centerX() - dest.width(), dest.centerY() - dest.height(), dest.centerX() + dest.width(), dest.centerY() + dest.height(), 270 + (anglePerColor * i), anglePerColor, true, paint);
+            }
+        }
+    }
+
+    // Atlases vs run-length encoded alpha vs polar strips: memory, draw time and output, for
+    // each device profile
+    public static void encoded() {
+        for (int i = 0; i < JSONS.length; i++) {
+            LottieComposition lottieComposition = getComposition(i);
+            RingRenderer geometry = RingRenderer.fromJson(JSONS[i]);
+            if (lottieComposition == null) continue;
+            int width = lottieComposition.getBounds().width();
+            int height = lottieComposition.getBounds().height();
+
+            SpriteSheet atlas = SpriteSheet.fromLottieComposition(lottieComposition, width, height, SpritePlayer.Mode.SWIRL);
+            if (atlas == null) continue;
+            Bitmap[] targets = new Bitmap[] {
+                    Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888),
+                    Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
+            };
+            try {
+                float atlasSingle = drawLoop(new Canvas(targets[0]), atlas, COLORS_SINGLE, false);
+                float atlasMulti = drawLoop(new Canvas(targets[0]), atlas, COLORS_MULTI, false);
+                Slog.d(TAG, String.format(Locale.ENGLISH, "%s %dx%d atlas bytes:%d single:%.1fus multi:%.1fus",
+                        NAMES[i], width, height, atlas.getByteCount(), atlasSingle, atlasMulti));
+
+                for (boolean polar : new boolean[] { false, true }) {
+                    SpriteSheet encoded = SpriteSheet.fromLottieComposition(lottieComposition, width, height, SpritePlayer.Mode.SWIRL);
+                    if (encoded == null) continue;
+                    try {
+                        boolean ok = polar ? (geometry != null) && encoded.encodePolar(geometry) : encoded.encode();
+                        if (!ok) {
+                            Slog.d(TAG, String.format(Locale.ENGLISH, "%s %dx%d %s: unsupported", NAMES[i], width, height, polar ? "polar" : "rle"));
+                            continue;
+                        }
+
+                        float single = drawLoop(new Canvas(targets[1]), encoded, COLORS_SINGLE, false);
+                        float multi = drawLoop(new Canvas(targets[1]), encoded, COLORS_MULTI, false);
+
+                        int maxDiff = 0;
+                        for (int frame = 0; frame < atlas.getFrames(); frame++) {
+                            drawFrame(new Canvas(targets[0]), atlas.getFrame(frame), COLORS_SINGLE, false);
+                            drawFrame(new Canvas(targets[1]), encoded.getFrame(frame), COLORS_SINGLE, false);
+                            maxDiff = Math.max(maxDiff, maxDifference(targets[0], targets[1]));
+                        }
+
+                        Slog.d(TAG, String.format(Locale.ENGLISH, "%s %dx%d %s bytes:%d (%.1f%%) single:%.1fus multi:%.1fus maxDifference:%d",
+                                NAMES[i], width, height, polar ? "polar" : "rle", encoded.getByteCount(), 100f * encoded.getByteCount() / atlas.getByteCount(), single, multi, maxDiff));
+                    } finally {
+                        encoded.release();
+                    }
+                }
+            } finally {
+                atlas.release();
+                for (Bitmap target : targets) {
+                    target.recycle();
+                }
+            }
+        }
+    }
+
+    // Keyframe intervals against full-rate playback: build time, memory and the error of the
+    // blended in-between frames
+    public static void keyframes() {
+        for (int i = 0; i < JSONS.length; i++) {
+            LottieComposition lottieComposition = getComposition(i);
+            if (lottieComposition == null) continue;
+            int width = lottieComposition.getBounds().width();
+            int height = lottieComposition.getBounds().height();
+
+            long start = nanos();
+            SpriteSheet full = SpriteSheet.fromLottieComposition(lottieComposition, width, height, SpritePlayer.Mode.SWIRL, SpriteSheet.ALPHA_ONLY, SpriteSheet.WORKERS, 1);
+            long fullBuild = nanos() - start;
+            if (full == null) continue;
+            Slog.d(TAG, String.format(Locale.ENGLISH, "%s %dx%d keyframes interval:1 build:%.1fms bytes:%d",
+                    NAMES[i], width, height, fullBuild / 1000000f, full.getByteCount()));
+
+            Bitmap[] targets = new Bitmap[] {
+                    Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888),
+                    Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888)
+            };
+            try {
+                int auto = CompositionCache.getKeyframeInterval(lottieComposition);
+                for (int interval = 2; interval <= SpriteSheet.KEYFRAME_INTERVAL_MAX; interval++) {
+                    start = nanos();
+                    SpriteSheet spriteSheet = SpriteSheet.fromLottieComposition(lottieComposition, width, height, SpritePlayer.Mode.SWIRL, SpriteSheet.ALPHA_ONLY, SpriteSheet.WORKERS, interval);
+                    long build = nanos() - start;
+                    if (spriteSheet == null) continue;
+                    try {
+                        int maxDiff = 0;
+                        int worstFrame = 0;
+                        for (int frame = 0; frame < full.getPlaybackFrames(); frame++) {
+                            drawKeyframes(new Canvas(targets[0]), full, frame);
+                            drawKeyframes(new Canvas(targets[1]), spriteSheet, frame);
+                            int diff = maxDifference(targets[0], targets[1]);
+                            if (diff > maxDiff) {
+                                maxDiff = diff;
+                                worstFrame = frame;
+                            }
+                        }
+                        Slog.d(TAG, String.format(Locale.ENGLISH, "%s %dx%d keyframes interval:%d%s build:%.1fms bytes:%d maxDifference:%d@%d",
+                                NAMES[i], width, height, interval, interval == auto ? " (auto)" : "", build / 1000000f, spriteSheet.getByteCount(), maxDiff, worstFrame));
+                    } finally {
+                        spriteSheet.release();
+                    }
+                }
+            } finally {
+                full.release();
+                for (Bitmap target : targets) {
+                    target.recycle();
+                }
+            }
+        }
+    }
+
+    // mirrors SpritePlayer::drawSprite, in white
+    private static void drawKeyframes(Canvas canvas, SpriteSheet spriteSheet, int frame) {
+        Rect dest = new Rect(0, 0, canvas.getWidth(), canvas.getHeight());
+        Paint paint = new Paint();
+        paint.setColor(Color.WHITE);
+        canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+
+        int keyframe = spriteSheet.getKeyframe(frame);
+        float blend = spriteSheet.getKeyframeBlend(frame);
+        SpriteSheet.Sprite sprite = spriteSheet.getFrame(keyframe);
+        SpriteSheet.Sprite next = blend > 0 ? spriteSheet.getFrame(keyframe + 1) : null;
+        if (next == null) {
+            canvas.drawBitmap(sprite.getBitmap(), sprite.getArea(), dest, paint);
+            return;
+        }
+        paint.setAlpha(Math.round(255 * (1f - blend)));
+        canvas.drawBitmap(sprite.getBitmap(), sprite.getArea(), dest, paint);
+        paint.setAlpha(Math.round(255 * blend));
+        paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.ADD));
+        canvas.drawBitmap(next.getBitmap(), next.getArea(), dest, paint);
+    }
+
+    // Software surface canvas with CPU atlases vs hardware surface canvas with uploaded atlases,
+    // for the stock compositions at their native size
+    public static void hardware() {
+        for (int i = 0; i < JSONS.length; i++) {
+            LottieComposition lottieComposition = getComposition(i);
+            if (lottieComposition == null) continue;
+            int width = lottieComposition.getBounds().width();
+            int height = lottieComposition.getBounds().height();
+
+            SpriteSheet spriteSheet = SpriteSheet.fromLottieComposition(lottieComposition, width, height, SpritePlayer.Mode.SWIRL);
+            if (spriteSheet == null) continue;
+            try {
+                String memorySoftware = getMemory();
+                float software = surfaceLoop(spriteSheet, width, height, false);
+                if (!spriteSheet.upload()) continue;
+                String memoryHardware = getMemory();
+                float hardware = surfaceLoop(spriteSheet, width, height, true);
+
+                Slog.d(TAG, String.format(Locale.ENGLISH, "%s %dx%d software:%.1fus [%s] hardware:%.1fus [%s]",
+                        NAMES[i], width, height, software, memorySoftware, hardware, memoryHardware));
+            } finally {
+                spriteSheet.release();
+            }
+        }
+    }
+
+    // A surface can't switch between CPU and GPU producers, so each run gets its own
+    private static float surfaceLoop(SpriteSheet spriteSheet, int width, int height, boolean hardware) {
+        ImageReader imageReader = ImageReader.newInstance(width, height, PixelFormat.RGBA_8888, 2);
+        try {
+            Surface surface = imageReader.getSurface();
+            long start = nanos();
+            for (int loop = 0; loop < LOOPS; loop++) {
+                for (int frame = 0; frame < spriteSheet.getFrames(); frame++) {
+                    Canvas canvas = hardware ? surface.lockHardwareCanvas() : surface.lockCanvas(null);
+                    try {
+                        drawFrame(canvas, spriteSheet.getFrame(frame), COLORS_SINGLE, false);
+                    } finally {
+                        surface.unlockCanvasAndPost(canvas);
+                    }
+                    Image image = imageReader.acquireLatestImage();
+                    if (image != null) image.close();
+                }
+            }
+            return (nanos() - start) / (LOOPS * spriteSheet.getFrames() * 1000f);
+        } finally {
+            imageReader.close();
+        }
+    }
+
+    // RingRenderer draw time vs the Lottie rendered sheets, per mode. Whether the output matches
+    // is checked by RingRendererTest.
+    public static void ring() {
+        for (int i = 0; i < JSONS.length; i++) {
+            LottieComposition lottieComposition = getComposition(i);
+            RingRenderer ringRenderer = RingRenderer.fromJson(JSONS[i]);
+            if ((lottieComposition == null) || (ringRenderer == null)) {
+                Slog.d(TAG, String.format(Locale.ENGLISH, "%s ring: unsupported", NAMES[i]));
+                continue;
+            }
+            int width = lottieComposition.getBounds().width();
+            int height = lottieComposition.getBounds().height();
+            Rect dest = new Rect(0, 0, width, height);
+            Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(bitmap);
+            try {
+                for (SpritePlayer.Mode mode : SpritePlayer.Mode.values()) {
+                    SpriteSheet spriteSheet = SpriteSheet.fromLottieComposition(lottieComposition, width, height, mode, false);
+                    if (spriteSheet == null) continue;
+                    try {
+                        int frames = spriteSheet.getFrames();
+                        long sheetNanos = 0;
+                        long ringNanos = 0;
+                        for (int loop = 0; loop < LOOPS; loop++) {
+                            for (int frame = 0; frame < frames; frame++) {
+                                long start = nanos();
+                                bitmap.eraseColor(Color.TRANSPARENT);
+                                SpriteSheet.Sprite sprite = spriteSheet.getFrame(frame);
+                                canvas.drawBitmap(sprite.getBitmap(), sprite.getArea(), dest, null);
+                                sheetNanos += nanos() - start;
+
+                                start = nanos();
+                                bitmap.eraseColor(Color.TRANSPARENT);
+                                ringRenderer.draw(canvas, dest, mode, frame, Color.WHITE);
+                                ringNanos += nanos() - start;
+                            }
+                        }
+                        Slog.d(TAG, String.format(Locale.ENGLISH, "%s %dx%d ring %s frames:%d sheet:%.2fms/frame ring:%.2fms/frame",
+                                NAMES[i], width, height, mode.name(), frames, sheetNanos / (LOOPS * frames * 1000000f), ringNanos / (LOOPS * frames * 1000000f)));
+                    } finally {
+                        spriteSheet.release();
+                    }
+                }
+            } finally {
+                bitmap.recycle();
+            }
+        }
+    }
+
+    // Recorded pictures vs sprite sheet atlases for the SWIRL loop: build time, memory, and the
+    // cost of replaying a frame vs drawBitmap
+    public static void pictures() {
+        for (int i = 0; i < JSONS.length; i++) {
+            LottieComposition lottieComposition = getComposition(i);
+            if (lottieComposition == null) continue;
+            int width = lottieComposition.getBounds().width();
+            int height = lottieComposition.getBounds().height();
+
+            String memoryBefore = getMemory();
+            long start = nanos();
+            PictureSheet pictureSheet = PictureSheet.fromLottieComposition(lottieComposition);
+            long record = nanos() - start;
+            if (pictureSheet == null) continue;
+            Slog.d(TAG, String.format(Locale.ENGLISH, "%s pictures record:%.1fms before:[%s] after:[%s]",
+                    NAMES[i], record / 1000000f, memoryBefore, getMemory()));
+
+            start = nanos();
+            SpriteSheet spriteSheet = SpriteSheet.fromLottieComposition(lottieComposition, width, height, SpritePlayer.Mode.SWIRL, SpriteSheet.ALPHA_ONLY, SpriteSheet.WORKERS, 1);
+            long build = nanos() - start;
+            if (spriteSheet == null) continue;
+            Bitmap target = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            try {
+                Canvas canvas = new Canvas(target);
+                Rect dest = new Rect(0, 0, width, height);
+                int frames = pictureSheet.getFrames(SpritePlayer.Mode.SWIRL);
+
+                float bitmapMicros = drawLoop(canvas, spriteSheet, COLORS_SINGLE, false);
+
+                start = nanos();
+                for (int loop = 0; loop < LOOPS; loop++) {
+                    for (int frame = 0; frame < frames; frame++) {
+                        canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+                        pictureSheet.draw(canvas, dest, SpritePlayer.Mode.SWIRL, frame, SpritePlayer.getTintColor(COLORS_SINGLE[0]));
+                    }
+                }
+                float pictureMicros = (nanos() - start) / (LOOPS * frames * 1000f);
+
+                Slog.d(TAG, String.format(Locale.ENGLISH, "%s %dx%d pictures SWIRL frames:%d build:%.1fms/%.1fms bytes:-/%d draw:%.0fus/%.0fus (pictures/bitmaps)",
+                        NAMES[i], width, height, frames, record / 1000000f, build / 1000000f, spriteSheet.getByteCount(), pictureMicros, bitmapMicros));
+            } finally {
+                spriteSheet.release();
+                target.recycle();
+            }
+        }
+    }
+
+    private static String getMemory() {
+        Debug.MemoryInfo memoryInfo = new Debug.MemoryInfo();
+        Debug.getMemoryInfo(memoryInfo);
+        return String.format(Locale.ENGLISH, "java:%skB native:%skB graphics:%skB",
+                memoryInfo.getMemoryStat("summary.java-heap"), memoryInfo.getMemoryStat("summary.native-heap"), memoryInfo.getMemoryStat("summary.graphics"));
+    }
+
+    private static boolean identical(SpriteSheet a, SpriteSheet b) {
+        if (!Arrays.equals(a.getSlots(), b.getSlots())) return false;
+        int w = a.getWidth();
+        int h = a.getHeight();
+        int[] pa = new int[w * h];
+        int[] pb = new int[w * h];
+        for (int frame = 0; frame < a.getFrames(); frame++) {
+            SpriteSheet.Sprite sa = a.getFrame(frame);
+            SpriteSheet.Sprite sb = b.getFrame(frame);
+            sa.getBitmap().getPixels(pa, 0, w, sa.getArea().left, sa.getArea().top, w, h);
+            sb.getBitmap().getPixels(pb, 0, w, sb.getArea().left, sb.getArea().top, w, h);
+            if (!Arrays.equals(pa, pb)) return false;
+        }
+        return true;
+    }
+
+    private static int maxDifference(Bitmap a, Bitmap b) {
+        int w = a.getWidth();
+        int h = a.getHeight();
+        int[] pa = new int[w * h];
+        int[] pb = new int[w * h];
+        a.getPixels(pa, 0, w, 0, 0, w, h);
+        b.getPixels(pb, 0, w, 0, 0, w, h);
+        int ret = 0;
+        for (int i = 0; i < pa.length; i++) {
+            if (pa[i] == pb[i]) continue;
+            for (int shift = 0; shift < 32; shift += 8) {
+                ret = Math.max(ret, Math.abs(((pa[i] >> shift) & 0xFF) - ((pb[i] >> shift) & 0xFF)));
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2019 Jorrit "Chainfire" Jongma
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package eu.chainfire.holeylight.animation;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+import eu.chainfire.holeylight.BuildConfig;
+import eu.chainfire.holeylight.misc.Slog;
+
+/*
+ * Keeps sprite sheets that are not currently in use, so switching back to a recently used size
+ * is a lookup rather than a rebuild. A sheet is owned either by the player or by this cache:
+ * take() removes it from the cache, put() hands it back. Least recently used sheets are
+ * released when the byte budget is exceeded.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" })
+public class SpriteSheetCache {
+    private static final String TAG = "SpriteSheetCache";
+
+    public static final long DEFAULT_BUDGET = 16 * 1024 * 1024;
+
+    // Sheets can still be encoded or released after they were put, so what was charged for an
+    // entry is remembered and that exact amount is given back when it leaves
+    private static final class Entry {
+        private final SpriteSheet spriteSheet;
+        private final SpritePlayer.Mode mode;
+        private final long bytes;
+
+        private Entry(SpriteSheet spriteSheet, SpritePlayer.Mode mode) {
+            this.spriteSheet = spriteSheet;
+            this.mode = mode;
+            this.bytes = spriteSheet.getByteCount();
+        }
+    }
+
+    private final LinkedHashMap<Long, Entry> sheets = new LinkedHashMap<>(8, 0.75f, true);
+    private long budget;
+    private long bytes = 0;
+
+    public SpriteSheetCache(long budget) {
+        this.budget = budget;
+    }
+
+    // Called on every lookup, so no formatting here. Height is well below 2^24.
+    private static long getKey(int width, int height, SpritePlayer.Mode mode) {
+        return ((long)width << 32) | ((long)height << 8) | mode.ordinal();
+    }
+
+    public synchronized SpriteSheet take(int width, int height, SpritePlayer.Mode mode) {
+        Entry entry = sheets.remove(getKey(width, height, mode));
+        if (entry == null) return null;
+        bytes -= entry.bytes;
+        if (!entry.spriteSheet.isValid()) {
+            entry.spriteSheet.release();
+            return null;
+        }
+        if (BuildConfig.DEBUG) {
+            Slog.d(TAG, String.format(Locale.ENGLISH, "hit %dx%d_%s", width, height, mode.name()));
+        }
+        return entry.spriteSheet;
+    }
+
+    public synchronized boolean contains(int width, int height, SpritePlayer.Mode mode) {
+        return sheets.containsKey(getKey(width, height, mode));
+    }
+
+    public synchronized void put(SpriteSheet spriteSheet, SpritePlayer.Mode mode) {
+        if (spriteSheet == null) return;
+        if (!spriteSheet.isValid() || (spriteSheet.getByteCount() > budget)) {
+            spriteSheet.release();
+            return;
+        }
+        Entry entry = new Entry(spriteSheet, mode);
+        Entry old = sheets.put(getKey(spriteSheet.getWidth(), spriteSheet.getHeight(), mode), entry);
+        if (old != null) {
+            bytes -= old.bytes;
+            if (old.spriteSheet != spriteSheet) old.spriteSheet.release();
+        }
+        bytes += entry.bytes;
+        trim();
+    }
+
+    private void trim() {
+        Iterator<Entry> iterator = sheets.values().iterator();
+        while ((bytes > budget) && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (BuildConfig.DEBUG) {
+                Slog.d(TAG, String.format(Locale.ENGLISH, "evict %dx%d_%s", entry.spriteSheet.getWidth(), entry.spriteSheet.getHeight(), entry.mode.name()));
+            }
+            bytes -= entry.bytes;
+            entry.spriteSheet.release();
+            iterator.remove();
+        }
+    }
+
+    public synchronized long getBudget() {
+        return budget;
+    }
+
+    public synchronized void setBudget(long budget) {
+        this.budget = budget;
+        trim();
+    }
+
+    public synchronized long getByteCount() {
+        return bytes;
+    }
+
+    public synchronized void clear() {
+        for (Entry entry : sheets.values()) {
+            entry.spriteSheet.release();
+        }
+        sheets.clear();
+        bytes = 0;
+    }
+}
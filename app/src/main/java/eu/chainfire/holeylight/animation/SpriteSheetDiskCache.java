@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2019 Jorrit "Chainfire" Jongma
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package eu.chainfire.holeylight.animation;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import eu.chainfire.holeylight.misc.Slog;
+
+/*
+ * Stores rasterized sprite sheets on disk, so we don't have to go through Lottie every time
+ * the service starts or the size changes back to something we've seen before.
+ *
+ * Files are keyed by a hash of the composition JSON, the sprite size, the mode and the keyframe
+ * interval, so sheets sampled at different intervals live side by side. Sheets in
+ * the directory that don't match the current composition or format version are deleted on the
+ * next save. Bump VERSION whenever rasterization output or the file layout changes.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" })
+public class SpriteSheetDiskCache {
+    private static final String TAG = "SpriteSheetDiskCache";
+
+    private static final int MAGIC = 0x484C5353; // HLSS
+    private static final int VERSION = 7;
+    private static final int MAX_ENTRIES = 16;
+    private static final String DIRECTORY = "spritesheets";
+    private static final String EXTENSION = ".sheet";
+    private static final String TEMP_EXTENSION = EXTENSION + ".tmp"; // see save()
+    private static final long TEMP_MAX_AGE = 24 * 60 * 60 * 1000L;
+
+    private static final int HEADER_INTS = 9;
+    private static final int SHEET_HEADER_INTS = 4;
+
+    private final File directory;
+    private final String json;
+    private String prefix = null;
+
+    public SpriteSheetDiskCache(Context context, String json) {
+        this.directory = new File(context.getApplicationContext().getCacheDir(), DIRECTORY);
+        this.json = json;
+    }
+
+    private synchronized String getPrefix() {
+        if (prefix == null) {
+            String hash;
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-1");
+                byte[] bytes = digest.digest(json.getBytes(StandardCharsets.UTF_8));
+                StringBuilder sb = new StringBuilder();
+                for (int i = 0; i < 8; i++) {
+                    sb.append(String.format(Locale.ENGLISH, "%02x", bytes[i]));
+                }
+                hash = sb.toString();
+            } catch (Exception e) {
+                hash = String.format(Locale.ENGLISH, "%08x", json.hashCode());
+            }
+            prefix = String.format(Locale.ENGLISH, "v%d_%s_", VERSION, hash);
+        }
+        return prefix;
+    }
+
+    private File getFile(int width, int height, SpritePlayer.Mode mode, int interval) {
+        return new File(directory, String.format(Locale.ENGLISH, "%s%dx%d_%s_k%d%s", getPrefix(), width, height, mode.name().toLowerCase(Locale.ENGLISH), interval, EXTENSION));
+    }
+
+    public SpriteSheet load(int width, int height, SpritePlayer.Mode mode, int interval) {
+        File file = getFile(width, height, mode, interval);
+        if (!file.exists()) return null;
+
+        List<Bitmap> bitmaps = new ArrayList<>();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.nativeOrder());
+
+            if (
+                    (buffer.getInt() != MAGIC) ||
+                    (buffer.getInt() != VERSION) ||
+                    (buffer.getInt() != width) ||
+                    (buffer.getInt() != height)
+            ) throw new IllegalStateException("header mismatch");
+            int frames = buffer.getInt();
+            int frameRate = buffer.getInt();
+            if (buffer.getInt() != interval) {
+                // a valid sheet for another interval is a miss, not corruption; keep it
+                Slog.d(TAG, String.format(Locale.ENGLISH, "load %s: interval differs", file.getName()));
+                return null;
+            }
+            int playbackFrames = buffer.getInt();
+            int sheets = buffer.getInt();
+
+            int[] sheetHeaders = new int[sheets * SHEET_HEADER_INTS];
+            buffer.asIntBuffer().get(sheetHeaders);
+            buffer.position(buffer.position() + sheetHeaders.length * 4);
+
+            int[] slots = new int[frames];
+            buffer.asIntBuffer().get(slots);
+            buffer.position(buffer.position() + slots.length * 4);
+
+            for (int i = 0; i < sheets; i++) {
+                int bitmapWidth = sheetHeaders[i * SHEET_HEADER_INTS];
+                int bitmapHeight = sheetHeaders[i * SHEET_HEADER_INTS + 1];
+                Bitmap.Config config = Bitmap.Config.values()[sheetHeaders[i * SHEET_HEADER_INTS + 2]];
+                int byteCount = sheetHeaders[i * SHEET_HEADER_INTS + 3];
+
+                Bitmap bitmap = BitmapPool.obtain(bitmapWidth, bitmapHeight, config);
+                bitmaps.add(bitmap);
+                if (bitmap.getByteCount() != byteCount) throw new IllegalStateException("size mismatch");
+
+                ByteBuffer pixels = buffer.slice();
+                pixels.limit(byteCount);
+                bitmap.copyPixelsFromBuffer(pixels);
+                buffer.position(buffer.position() + byteCount);
+            }
+
+            SpriteSheet spriteSheet = SpriteSheet.fromBitmaps(width, height, frames, frameRate, interval, playbackFrames, bitmaps, slots);
+            if (spriteSheet != null) {
+                //noinspection ResultOfMethodCallIgnored
+                file.setLastModified(System.currentTimeMillis());
+                Slog.d(TAG, String.format(Locale.ENGLISH, "load %s", file.getName()));
+                return spriteSheet;
+            }
+        } catch (Exception e) {
+            Slog.d(TAG, String.format(Locale.ENGLISH, "load %s failed: %s", file.getName(), e.getMessage()));
+            for (Bitmap bitmap : bitmaps) {
+                BitmapPool.release(bitmap);
+            }
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+        return null;
+    }
+
+    public void save(SpriteSheet spriteSheet, SpritePlayer.Mode mode) {
+        if (spriteSheet == null) return;
+
+        //noinspection ResultOfMethodCallIgnored
+        directory.mkdirs();
+        prune();
+
+        File file = getFile(spriteSheet.getWidth(), spriteSheet.getHeight(), mode, spriteSheet.getKeyframeInterval());
+        File temp = new File(directory, file.getName() + ".tmp");
+
+        // hold a reference so the bitmaps can't return to the pool while we read them, upload()
+        // only happens after saving, on the same thread
+        if (!spriteSheet.acquire()) return;
+        long size = 0;
+        try {
+            if (!spriteSheet.isValid() || spriteSheet.isUploaded() || spriteSheet.isEncoded()) return;
+
+            List<Bitmap> bitmaps = spriteSheet.getBitmaps();
+            int[] slots = spriteSheet.getSlots();
+            size = (HEADER_INTS + bitmaps.size() * SHEET_HEADER_INTS + slots.length) * 4;
+            for (Bitmap bitmap : bitmaps) {
+                size += bitmap.getByteCount();
+            }
+
+            try (RandomAccessFile raf = new RandomAccessFile(temp, "rw")) {
+                raf.setLength(size);
+                MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.order(ByteOrder.nativeOrder());
+
+                buffer.putInt(MAGIC);
+                buffer.putInt(VERSION);
+                buffer.putInt(spriteSheet.getWidth());
+                buffer.putInt(spriteSheet.getHeight());
+                buffer.putInt(spriteSheet.getFrames());
+                buffer.putInt(spriteSheet.getFrameRate());
+                buffer.putInt(spriteSheet.getKeyframeInterval());
+                buffer.putInt(spriteSheet.getPlaybackFrames());
+                buffer.putInt(bitmaps.size());
+                for (Bitmap bitmap : bitmaps) {
+                    buffer.putInt(bitmap.getWidth());
+                    buffer.putInt(bitmap.getHeight());
+                    buffer.putInt(bitmap.getConfig().ordinal());
+                    buffer.putInt(bitmap.getByteCount());
+                }
+                for (int slot : slots) {
+                    buffer.putInt(slot);
+                }
+                for (Bitmap bitmap : bitmaps) {
+                    ByteBuffer pixels = buffer.slice();
+                    pixels.limit(bitmap.getByteCount());
+                    bitmap.copyPixelsToBuffer(pixels);
+                    buffer.position(buffer.position() + bitmap.getByteCount());
+                }
+                buffer.force();
+            }
+            if (!temp.renameTo(file)) throw new IllegalStateException("rename failed");
+            Slog.d(TAG, String.format(Locale.ENGLISH, "save %s [%d bytes]", file.getName(), size));
+        } catch (Exception e) {
+            Slog.d(TAG, String.format(Locale.ENGLISH, "save %s failed: %s", file.getName(), e.getMessage()));
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+        } finally {
+            spriteSheet.release();
+        }
+    }
+
+    private void prune() {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+
+        // stale composition or format version. Temp files may be another writer's save in
+        // progress, they're only removed once they are clearly left over from a crash.
+        List<File> current = new ArrayList<>();
+        long abandoned = System.currentTimeMillis() - TEMP_MAX_AGE;
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(TEMP_EXTENSION)) {
+                if (name.startsWith("v") && (file.lastModified() < abandoned)) {
+                    //noinspection ResultOfMethodCallIgnored
+                    file.delete();
+                }
+            } else if (name.startsWith("v") && name.endsWith(EXTENSION)) {
+                if (name.startsWith(getPrefix())) {
+                    current.add(file);
+                } else {
+                    //noinspection ResultOfMethodCallIgnored
+                    file.delete();
+                }
+            }
+        }
+
+        // tuning can produce a lot of sizes, keep only the most recent ones
+        if (current.size() >= MAX_ENTRIES) {
+            File[] sorted = current.toArray(new File[0]);
+            Arrays.sort(sorted, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+            for (int i = MAX_ENTRIES - 1; i < sorted.length; i++) {
+                //noinspection ResultOfMethodCallIgnored
+                sorted[i].delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2019 Jorrit "Chainfire" Jongma
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package eu.chainfire.holeylight.animation;
+
+import android.graphics.Rect;
+import android.view.SurfaceHolder;
+
+/*
+ * Puts sprite sheet frames on the player's surface instead of the player's own canvas code.
+ * All calls are made on the render thread. Once a renderer has drawn to the surface, nothing
+ * else can until release() is called.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" })
+public interface SurfaceRenderer {
+    // Draws the sprite (cross-faded into next by blend) into dest, in a single color or in
+    // segments clockwise from the top for multiple, over black if background is set. Returns
+    // false if nothing was posted.
+    boolean render(SurfaceHolder holder, SpriteSheet spriteSheet, SpriteSheet.Sprite sprite, SpriteSheet.Sprite next, float blend, Rect dest, int[] colors, boolean background);
+
+    // Posts an empty frame
+    boolean clear(SurfaceHolder holder, boolean background);
+
+    // Lets go of the surface and everything allocated for it, render() starts over
+    void release();
+}
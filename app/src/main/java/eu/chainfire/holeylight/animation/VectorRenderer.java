@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2019 Jorrit "Chainfire" Jongma
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package eu.chainfire.holeylight.animation;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+
+/*
+ * Draws any frame at any size, so the player needs no sprite sheets. Frames are laid out like
+ * the sprite sheets of each mode.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" })
+public interface VectorRenderer {
+    int getFrames(SpritePlayer.Mode mode);
+    int getFrameRate(SpritePlayer.Mode mode);
+
+    // Draws into dest in the given color. Not thread-safe, use from the render thread only.
+    void draw(Canvas canvas, Rect dest, SpritePlayer.Mode mode, int frame, int color);
+}
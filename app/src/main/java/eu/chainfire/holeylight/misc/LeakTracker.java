@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2019 Jorrit "Chainfire" Jongma
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package eu.chainfire.holeylight.misc;
+
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import eu.chainfire.holeylight.BuildConfig;
+
+/*
+ * Debug-only bookkeeping of objects that have to be released explicitly (sprite sheets, players,
+ * threads). Enable TRACK and call report() to log whatever is still outstanding, along with
+ * where it was created.
+ */
+@SuppressWarnings({ "WeakerAccess", "unused" })
+public class LeakTracker {
+    private static final String TAG = "LeakTracker";
+    private static final boolean TRACK = false;
+
+    public static final boolean ENABLED = BuildConfig.DEBUG && TRACK;
+
+    private static final Map<Object, Throwable> tracked = new IdentityHashMap<>();
+
+    public static void track(Object object, String description) {
+        if (!ENABLED) return;
+        synchronized (tracked) {
+            tracked.put(object, new Throwable(description));
+        }
+    }
+
+    // First frame that isn't ours or one of the object's (possibly chained) constructors
+    private static String getCreator(Object object, Throwable created) {
+        String className = object.getClass().getName();
+        for (StackTraceElement element : created.getStackTrace()) {
+            if (element.getClassName().equals(LeakTracker.class.getName())) continue;
+            if (element.getClassName().equals(className) && element.getMethodName().equals("<init>")) continue;
+            return element.toString();
+        }
+        return "?";
+    }
+
+    public static void untrack(Object object) {
+        if (!ENABLED) return;
+        synchronized (tracked) {
+            tracked.remove(object);
+        }
+    }
+
+    public static int getOutstanding() {
+        synchronized (tracked) {
+            return tracked.size();
+        }
+    }
+
+    public static void report() {
+        if (!ENABLED) return;
+        synchronized (tracked) {
+            Slog.d(TAG, String.format(Locale.ENGLISH, "%d outstanding", tracked.size()));
+            for (Map.Entry<Object, Throwable> entry : tracked.entrySet()) {
+                Throwable created = entry.getValue();
+                Slog.d(TAG, String.format(Locale.ENGLISH, "- %s from %s", created.getMessage(), getCreator(entry.getKey(), created)));
+            }
+        }
+    }
+}
@@ -63,7 +63,7 @@ public class Permissions {
     }
 
     public static Needed detect(Context context) {
-        if (!(new NotificationAnimation(context, null, null)).isDeviceSupported()) {
+        if (!NotificationAnimation.isDeviceSupported()) {
             return Needed.DEVICE_SUPPORT;
         } else if (android.provider.Settings.Secure.getInt(context.getContentResolver(), "display_cutout_hide_notch", 0) == 1) {
             return Needed.UNHIDE_NOTCH;
@@ -32,6 +32,7 @@ import java.util.Map;
 
 import androidx.preference.PreferenceManager;
 import eu.chainfire.holeylight.animation.SpritePlayer;
+import eu.chainfire.holeylight.animation.SpriteSheet;
 
 @SuppressWarnings({"WeakerAccess", "unused", "UnusedReturnValue"})
 public class Settings implements SharedPreferences.OnSharedPreferenceChangeListener {
@@ -97,12 +98,32 @@ public class Settings implements SharedPreferences.OnSharedPreferenceChangeListe
 
     private static final String SPEED_FACTOR = "speed_factor";
 
+    private static final String FRAME_RATE_FMT = "frame_rate_%d";
+    // indexed by mode, 0 is unlimited
+    private static final int[] FRAME_RATE_DEFAULT = new int[] { 0, 0, 0, 0 };
+
     private static final String CHANNEL_COLOR = "CHANNEL_COLOR:";
     private static final String CHANNEL_COLOR_FMT = CHANNEL_COLOR + "%s:%s";
 
     public static final String HIDE_AOD = "hide_aod";
     private static final boolean HIDE_AOD_DEFAULT = false;
 
+    // experimental rendering options, see NotificationAnimation.applyRendering()
+    public static final String RENDERING_HARDWARE = "rendering_hardware";
+    private static final boolean RENDERING_HARDWARE_DEFAULT = false;
+    public static final String RENDERING_RUN_LENGTH_ENCODING = "rendering_run_length_encoding";
+    private static final boolean RENDERING_RUN_LENGTH_ENCODING_DEFAULT = false;
+    public static final String RENDERING_POLAR_ENCODING = "rendering_polar_encoding";
+    private static final boolean RENDERING_POLAR_ENCODING_DEFAULT = false;
+    public static final String RENDERING_KEYFRAME_INTERVAL = "rendering_keyframe_interval";
+    private static final int RENDERING_KEYFRAME_INTERVAL_DEFAULT = 1; // 0 = automatic
+    public static final String RENDERING_PICTURES = "rendering_pictures";
+    private static final boolean RENDERING_PICTURES_DEFAULT = false;
+    public static final String RENDERING_PROCEDURAL = "rendering_procedural";
+    private static final boolean RENDERING_PROCEDURAL_DEFAULT = false;
+    public static final String RENDERING_GL = "rendering_gl";
+    private static final boolean RENDERING_GL_DEFAULT = false;
+
     private static Settings instance;
     public static Settings getInstance(Context context) {
         synchronized (Settings.class) {
@@ -406,6 +427,21 @@ public class Settings implements SharedPreferences.OnSharedPreferenceChangeListe
         }
     }
 
+    public int getFrameRate(int mode) {
+        return prefs.getInt(String.format(Locale.ENGLISH, FRAME_RATE_FMT, mode), FRAME_RATE_DEFAULT[mode]);
+    }
+
+    public void setFrameRate(int mode, int fps) {
+        fps = Math.min(Math.max(fps, 0), 60);
+
+        edit();
+        try {
+            editor.putInt(String.format(Locale.ENGLISH, FRAME_RATE_FMT, mode), fps);
+        } finally {
+            save(true);
+        }
+    }
+
     public int getMode(boolean charging, boolean screenOn) {
         return (charging ? SHIFT_CHARGING : SHIFT_BATTERY) + (screenOn ? SHIFT_SCREEN_ON : SHIFT_SCREEN_OFF);
     }
@@ -432,4 +468,43 @@ public class Settings implements SharedPreferences.OnSharedPreferenceChangeListe
     public boolean isHideAOD() {
         return prefs.getBoolean(HIDE_AOD, HIDE_AOD_DEFAULT);
     }
+
+    public boolean isRenderingHardware() {
+        return prefs.getBoolean(RENDERING_HARDWARE, RENDERING_HARDWARE_DEFAULT);
+    }
+
+    public boolean isRenderingRunLengthEncoding() {
+        return prefs.getBoolean(RENDERING_RUN_LENGTH_ENCODING, RENDERING_RUN_LENGTH_ENCODING_DEFAULT);
+    }
+
+    public boolean isRenderingPolarEncoding() {
+        return prefs.getBoolean(RENDERING_POLAR_ENCODING, RENDERING_POLAR_ENCODING_DEFAULT);
+    }
+
+    public boolean isRenderingPictures() {
+        return prefs.getBoolean(RENDERING_PICTURES, RENDERING_PICTURES_DEFAULT);
+    }
+
+    public boolean isRenderingProcedural() {
+        return prefs.getBoolean(RENDERING_PROCEDURAL, RENDERING_PROCEDURAL_DEFAULT);
+    }
+
+    public boolean isRenderingGL() {
+        return prefs.getBoolean(RENDERING_GL, RENDERING_GL_DEFAULT);
+    }
+
+    public int getRenderingKeyframeInterval() {
+        return prefs.getInt(RENDERING_KEYFRAME_INTERVAL, RENDERING_KEYFRAME_INTERVAL_DEFAULT);
+    }
+
+    public void setRenderingKeyframeInterval(int interval) {
+        interval = Math.min(Math.max(interval, 0), SpriteSheet.KEYFRAME_INTERVAL_MAX);
+
+        edit();
+        try {
+            editor.putInt(RENDERING_KEYFRAME_INTERVAL, interval);
+        } finally {
+            save(true);
+        }
+    }
 }
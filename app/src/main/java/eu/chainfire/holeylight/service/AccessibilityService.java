@@ -34,6 +34,12 @@ public class AccessibilityService extends android.accessibilityservice.Accessibi
     public void onInterrupt() {
     }
 
+    @Override
+    public void onDestroy() {
+        Overlay.release(this);
+        super.onDestroy();
+    }
+
     @Override
     public void onServiceConnected() {
         // When the service is created, it *should* setup the WindowManager with the correct token.
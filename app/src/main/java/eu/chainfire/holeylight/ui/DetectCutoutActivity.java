@@ -40,4 +40,10 @@ public class DetectCutoutActivity extends AppCompatActivity {
             return insets;
         });
     }
+
+    @Override
+    protected void onDestroy() {
+        animation.destroy();
+        super.onDestroy();
+    }
 }
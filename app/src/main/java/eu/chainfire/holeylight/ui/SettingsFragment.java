@@ -206,6 +206,69 @@ public class SettingsFragment extends PreferenceFragmentCompat implements Shared
             return false;
         });
 
+        PreferenceCategory catRendering = category(root, R.string.temp_settings_category_rendering_title, 0);
+        check(catRendering, R.string.temp_settings_rendering_hardware_title, R.string.temp_settings_rendering_hardware_description, Settings.RENDERING_HARDWARE, settings.isRenderingHardware(), true);
+        check(catRendering, R.string.temp_settings_rendering_gl_title, R.string.temp_settings_rendering_gl_description, Settings.RENDERING_GL, settings.isRenderingGL(), true);
+        check(catRendering, R.string.temp_settings_rendering_run_length_encoding_title, R.string.temp_settings_rendering_run_length_encoding_description, Settings.RENDERING_RUN_LENGTH_ENCODING, settings.isRenderingRunLengthEncoding(), true);
+        check(catRendering, R.string.temp_settings_rendering_polar_encoding_title, R.string.temp_settings_rendering_polar_encoding_description, Settings.RENDERING_POLAR_ENCODING, settings.isRenderingPolarEncoding(), true);
+        check(catRendering, R.string.temp_settings_rendering_procedural_title, R.string.temp_settings_rendering_procedural_description, Settings.RENDERING_PROCEDURAL, settings.isRenderingProcedural(), true);
+        check(catRendering, R.string.temp_settings_rendering_pictures_title, R.string.temp_settings_rendering_pictures_description, Settings.RENDERING_PICTURES, settings.isRenderingPictures(), true);
+        pref(catRendering, R.string.temp_settings_rendering_keyframe_interval_title, R.string.temp_settings_rendering_keyframe_interval_description, null, true, preference -> {
+            (new AlertDialog.Builder(getContext()))
+                    .setTitle(R.string.temp_settings_rendering_keyframe_interval_title)
+                    .setSingleChoiceItems(new CharSequence[] { // index is the interval
+                            getString(R.string.temp_settings_rendering_keyframe_interval_automatic),
+                            getString(R.string.temp_settings_rendering_keyframe_interval_off),
+                            "2",
+                            "3",
+                            "4"
+                    }, settings.getRenderingKeyframeInterval(), (dialog, which) -> {
+                        settings.setRenderingKeyframeInterval(which);
+                        dialog.dismiss();
+                    })
+                    .setNegativeButton(android.R.string.cancel, null)
+                    .show();
+            return false;
+        });
+        pref(catRendering, R.string.temp_settings_rendering_frame_rate_title, R.string.temp_settings_rendering_frame_rate_description, null, true, preference -> {
+            int[] modes = new int[] { Settings.CHARGING_SCREEN_ON, Settings.CHARGING_SCREEN_OFF, Settings.BATTERY_SCREEN_ON, Settings.BATTERY_SCREEN_OFF };
+            int[] labels = new int[] {
+                    R.string.settings_animation_powersave_screen_on_charging,
+                    R.string.settings_animation_powersave_screen_off_charging,
+                    R.string.settings_animation_powersave_screen_on_battery,
+                    R.string.settings_animation_powersave_screen_off_battery
+            };
+            int[] rates = new int[] { 0, 60, 30, 20, 15 }; // 0 is unlimited
+            CharSequence[] rateItems = new CharSequence[rates.length];
+            for (int i = 0; i < rates.length; i++) {
+                rateItems[i] = rates[i] == 0 ? getString(R.string.temp_settings_rendering_frame_rate_unlimited) : String.valueOf(rates[i]);
+            }
+            CharSequence[] items = new CharSequence[modes.length];
+            for (int i = 0; i < modes.length; i++) {
+                int fps = settings.getFrameRate(modes[i]);
+                items[i] = getString(R.string.temp_settings_rendering_frame_rate_item, getString(labels[i]), fps == 0 ? getString(R.string.temp_settings_rendering_frame_rate_unlimited) : getString(R.string.temp_settings_rendering_frame_rate_fps, fps));
+            }
+            (new AlertDialog.Builder(getContext()))
+                    .setTitle(R.string.temp_settings_rendering_frame_rate_title)
+                    .setItems(items, (dialog, which) -> {
+                        int checked = -1;
+                        for (int i = 0; i < rates.length; i++) {
+                            if (rates[i] == settings.getFrameRate(modes[which])) checked = i;
+                        }
+                        (new AlertDialog.Builder(getContext()))
+                                .setTitle(labels[which])
+                                .setSingleChoiceItems(rateItems, checked, (dialog2, which2) -> {
+                                    settings.setFrameRate(modes[which], rates[which2]);
+                                    dialog2.dismiss();
+                                })
+                                .setNegativeButton(android.R.string.cancel, null)
+                                .show();
+                    })
+                    .setNegativeButton(android.R.string.cancel, null)
+                    .show();
+            return false;
+        });
+
         PreferenceCategory catChainfire = category(root, R.string.settings_category_chainfire_title, 0);
         pref(catChainfire, R.string.settings_playstore_title, R.string.settings_playstore_description, null, true, preference -> {
             try {
@@ -64,6 +64,12 @@ public class TuneActivity extends AppCompatActivity implements Settings.OnSettin
         super.onStop();
     }
 
+    @Override
+    protected void onDestroy() {
+        animation.destroy();
+        super.onDestroy();
+    }
+
     @Override
     public void onSettingsChanged() {
         updateLabels();
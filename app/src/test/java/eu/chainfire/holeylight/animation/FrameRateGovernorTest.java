@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2019 Jorrit "Chainfire" Jongma
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ */
+
+package eu.chainfire.holeylight.animation;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * The delay before the next callback, for limits and refresh rates. Delays are measured against
+ * System.nanoTime(), so they are checked with some slack for a slow test run.
+ */
+public class FrameRateGovernorTest {
+    private static final long SLACK_MILLIS = 4;
+
+    private FrameRateGovernor governor;
+
+    @Before
+    public void setUp() {
+        governor = new FrameRateGovernor();
+    }
+
+    private static void assertDelay(long expected, long actual) {
+        assertTrue("delay " + actual + "ms, expected " + expected + "ms", (actual <= expected) && (actual >= expected - SLACK_MILLIS));
+    }
+
+    @Test
+    public void unlimited() {
+        governor.set(0, 0);
+        governor.onFrame(System.nanoTime(), 60);
+        assertEquals(0, governor.getDelayMillis());
+    }
+
+    @Test
+    public void sourceBelowLimit() {
+        governor.set(0, 30);
+        governor.onFrame(System.nanoTime(), 24);
+        assertEquals(0, governor.getDelayMillis());
+    }
+
+    @Test
+    public void limited60Hz() {
+        governor.setRefreshRate(60);
+        governor.set(0, 30);
+        assertEquals(30, governor.getLimit());
+        governor.onFrame(System.nanoTime(), 60);
+        // 33.3ms frame, 8.3ms early
+        assertDelay(25, governor.getDelayMillis());
+    }
+
+    @Test
+    public void limited120Hz() {
+        governor.setRefreshRate(120);
+        governor.set(0, 30);
+        governor.onFrame(System.nanoTime(), 60);
+        // 33.3ms frame, 4.2ms early
+        assertDelay(29, governor.getDelayMillis());
+    }
+
+    @Test
+    public void unknownRefreshRate() {
+        governor.setRefreshRate(0);
+        governor.set(0, 30);
+        governor.onFrame(System.nanoTime(), 60);
+        assertDelay(25, governor.getDelayMillis());
+    }
+
+    @Test
+    public void pastFrame() {
+        governor.set(0, 15);
+        governor.onFrame(System.nanoTime() - 1000000000L, 60);
+        assertEquals(0, governor.getDelayMillis());
+    }
+
+    @Test
+    public void setResets() {
+        governor.set(0, 30);
+        governor.onFrame(System.nanoTime(), 60);
+        assertTrue(governor.getDelayMillis() > 0);
+
+        // same state and limit keeps the pending frame
+        governor.set(0, 30);
+        assertTrue(governor.getDelayMillis() > 0);
+
+        governor.set(1, 30);
+        assertEquals(0, governor.getDelayMillis());
+    }
+}